@@ -0,0 +1,52 @@
+package benchmark;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Inputs of the JMH benchmarks, read from resources/benchmark relative to the project root the benchmarks are run
+ * from. Every benchmark takes its file names as @Params, so another corpus can be given with -p.
+ */
+
+import calculatorassets.ExpressionEvaluator;
+import calculatorassets.SpeechExpression;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+final class Corpus {
+    static final String EXPRESSIONS = "resources/benchmark/corpus.txt";
+    static final String NUMBERS = "resources/benchmark/numbers.txt";
+    static final String GRAMMAR = "resources/grammarFiles/equationSyntax.gram";
+    static final BigDecimal ANSWER = new BigDecimal("12.5");  // Bound to "answer" while benchmarking
+
+    private Corpus() {
+    }
+
+    /** Read non-empty lines that aren't comments */
+    static String[] read(String file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) lines.add(line);
+        }
+        if (lines.isEmpty()) throw new IllegalArgumentException("'" + file + "' holds no entries");
+        return lines.toArray(new String[0]);
+    }
+
+    /** Typical spoken answers, one to each expression */
+    static String[] answers(String[] expressions) {
+        ExpressionEvaluator uncached = new ExpressionEvaluator(null);
+        String[] answers = new String[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            SpeechExpression session = new SpeechExpression(uncached);
+            session.setAcousticRepresentation(expressions[i]);
+            answers[i] = "The result of " + session.getAcousticRepresentation() + " is equal to " +
+                    session.getSpokenResult();
+        }
+        return answers;
+    }
+}
@@ -0,0 +1,89 @@
+package benchmark;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * JMH benchmarks of evaluating compiled expressions and formatting their results, each invocation taking the next
+ * expression of the corpus:
+ * - evaluate:      evaluating compiled trees with the default numeric context (double fast path)
+ * - evaluateExact: evaluating compiled trees with the BigDecimal path only
+ * - formatResult:  rounding and zero stripping of a new result to its plain string
+ * - spokenResult:  spelling a new result out in words
+ */
+
+import calculatorassets.CompiledExpression;
+import calculatorassets.ExpressionCompiler;
+import calculatorassets.FormattedResult;
+import calculatorassets.NumericContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EvaluationBenchmarks {
+    private static final int SCALE = NumericContext.DEFAULT.getScale();
+    private static final NumericContext EXACT = new NumericContext(NumericContext.Backend.BIG_DECIMAL,
+            MathContext.DECIMAL128, SCALE);
+
+    @Param(Corpus.EXPRESSIONS)
+    public String corpusFile;
+
+    private CompiledExpression[] compiled;
+    private BigDecimal[] values;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] corpus = Corpus.read(corpusFile);
+        compiled = new CompiledExpression[corpus.length];
+        values = new BigDecimal[corpus.length];
+        for (int i = 0; i < corpus.length; i++) {
+            compiled[i] = ExpressionCompiler.compile(corpus[i]);
+            values[i] = compiled[i].evaluate(Corpus.ANSWER, true);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal evaluate() {
+        return compiled[next(compiled.length)].evaluate(Corpus.ANSWER, true);
+    }
+
+    @Benchmark
+    public BigDecimal evaluateExact() {
+        return compiled[next(compiled.length)].evaluate(Corpus.ANSWER, true, EXACT);
+    }
+
+    @Benchmark
+    public String formatResult() {
+        return new FormattedResult(values[next(values.length)], SCALE).getPlain();
+    }
+
+    @Benchmark
+    public String spokenResult() {
+        return new FormattedResult(values[next(values.length)], SCALE).getSpoken();
+    }
+
+    /** Index of the next input, going round the inputs */
+    private int next(int length) {
+        if (++next >= length) next = 0;
+        return next;
+    }
+}
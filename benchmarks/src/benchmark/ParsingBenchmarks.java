@@ -0,0 +1,134 @@
+package benchmark;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * JMH benchmarks of turning a hypothesis into a compiled expression and routing commands, each invocation taking the
+ * next entry of the corpus:
+ * - lexNumbers:     spoken numbers to number tokens (number validation and conversion)
+ * - lexExpressions: whole utterances to tokens
+ * - compile:        validation and tree building from tokens
+ * - compileCached:  utterance to tree through the compiled expression cache
+ * - grammarParse:   utterances to tokens through their derivation in the recognizer's expression grammar
+ * - route:          classifying commands built from the corpus and extracting their argument with the intent router
+ * - routeRegex:     the same with the regex chain sessions used before the router, for comparison
+ */
+
+import calculatorassets.CompiledExpression;
+import calculatorassets.ExpressionCompiler;
+import calculatorassets.GrammarParser;
+import calculatorassets.SpeechLexer;
+import calculatorassets.Token;
+import main.IntentRouter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ParsingBenchmarks {
+    private static final String[] COMMAND_PREFIXES = {"what is ", "what is the value of ", "calculate ", "compute "};
+    private static final String[] FIXED_COMMANDS = {"set the angle mode to degrees", "change angle mode to ray dee ins",
+            "set the calculator mode to express", "get the previous answer", "what was the result",
+            "what is the current angle mode", "what is the calculator mode", "turn it off"};
+
+    @Param(Corpus.EXPRESSIONS)
+    public String corpusFile;
+    @Param(Corpus.NUMBERS)
+    public String numbersFile;
+    @Param(Corpus.GRAMMAR)
+    public String grammarFile;
+
+    private String[] corpus;
+    private String[] numbers;
+    private String[] commands;
+    private Token[][] tokens;
+    private GrammarParser grammar;
+    private IntentRouter router;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        corpus = Corpus.read(corpusFile);
+        numbers = Corpus.read(numbersFile);
+        tokens = new Token[corpus.length][];
+        commands = new String[corpus.length + FIXED_COMMANDS.length];
+        for (int i = 0; i < corpus.length; i++) {
+            tokens[i] = SpeechLexer.lex(corpus[i]);
+            commands[i] = COMMAND_PREFIXES[i % COMMAND_PREFIXES.length] + corpus[i];
+        }
+        System.arraycopy(FIXED_COMMANDS, 0, commands, corpus.length, FIXED_COMMANDS.length);
+        grammar = GrammarParser.load(new File(grammarFile));
+        router = IntentRouter.getCommands();
+    }
+
+    @Benchmark
+    public Token[] lexNumbers() {
+        return SpeechLexer.lex(numbers[next(numbers.length)]);
+    }
+
+    @Benchmark
+    public Token[] lexExpressions() {
+        return SpeechLexer.lex(corpus[next(corpus.length)]);
+    }
+
+    @Benchmark
+    public CompiledExpression compile() {
+        return ExpressionCompiler.compile(tokens[next(tokens.length)]);
+    }
+
+    @Benchmark
+    public CompiledExpression compileCached() {
+        return ExpressionCompiler.compile(corpus[next(corpus.length)]);
+    }
+
+    @Benchmark
+    public Token[] grammarParse() {
+        return grammar.parse(corpus[next(corpus.length)]);
+    }
+
+    @Benchmark
+    public IntentRouter.Route route() {
+        return router.route(commands[next(commands.length)]);
+    }
+
+    @Benchmark
+    public String routeRegex() {
+        return routeRegex(commands[next(commands.length)]);
+    }
+
+    /** Index of the next input, going round the inputs */
+    private int next(int length) {
+        if (++next >= length) next = 0;
+        return next;
+    }
+
+    /** Command dispatch as sessions did it before the intent router, returns the argument */
+    private static String routeRegex(String speech) {
+        if (speech.matches("^(set )(the )?.*") || speech.matches("^(change )(the )?.*"))
+            return speech.replaceAll("^(set )(the )?", "").replaceAll("^(change )(the )?", "");
+        if (speech.matches("^(get )(the )?.*") || speech.matches("^(what was )(the )?.*"))
+            return speech.replaceAll("^(get )(the )?", "").replaceAll("^(what was )(the )?", "");
+        if (speech.matches("^(what is ).*"))
+            return speech.replaceAll("^(what is )(the )?(current )?(value of )?", "");
+        if (speech.matches("^(compute )(the value of )?.*") || speech.matches("^(calculate )(the value of )?.*"))
+            return speech.replaceAll("^(compute )(the value of )?", "").replaceAll("^(calculate )(the value of )?", "");
+        return speech;
+    }
+}
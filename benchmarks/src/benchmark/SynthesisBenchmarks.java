@@ -0,0 +1,143 @@
+package benchmark;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * JMH benchmarks of MaryTTS synthesis of typical answers, one to each expression of the corpus. Every state loads its
+ * own voice, so these take a while to set up, leave them out with -e Synthesis when only the calculator changed:
+ * - synthesize:          synthesizing answers without the audio cache
+ * - synthesizeCached:    the same answers from the audio cache
+ * - concatenate:         spelled out results stitched from number word units
+ * - firstAudio:          time to the first audio of answers synthesized whole
+ * - firstAudioStreaming: the same synthesized phrase by phrase
+ */
+
+import calculatorassets.ExpressionCompiler;
+import calculatorassets.FormattedResult;
+import calculatorassets.NumberWords;
+import calculatorassets.NumericContext;
+import tts.AudioCache;
+import tts.TextToSpeech;
+
+import marytts.exceptions.SynthesisException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SynthesisBenchmarks {
+    private static final String VOICE = "cmu-rms-hsmm";
+
+    /** A voice and the answers it speaks */
+    @State(Scope.Thread)
+    public static class Voice {
+        @Param(Corpus.EXPRESSIONS)
+        public String corpusFile;
+
+        TextToSpeech tts;
+        String[] answers;
+        final byte[] frame = new byte[2];  // 16 bit mono, audio streams only read whole frames
+        private int next;
+
+        @Setup
+        public void setUp() throws IOException {
+            answers = Corpus.answers(Corpus.read(corpusFile));
+            tts = new TextToSpeech();
+            tts.setVoice(VOICE);
+            tts.setAudioCache(null);
+        }
+
+        @TearDown
+        public void tearDown() {
+            tts.stopSpeaking();
+        }
+
+        /** Next answer, going round the answers */
+        String next() {
+            if (++next >= answers.length) next = 0;
+            return answers[next];
+        }
+    }
+
+    /** A voice with every answer in its audio cache */
+    @State(Scope.Thread)
+    public static class CachedVoice extends Voice {
+        @Setup
+        @Override
+        public void setUp() throws IOException {
+            super.setUp();
+            tts.setAudioCache(new AudioCache(TextToSpeech.DEFAULT_CACHE_BYTES));
+            tts.prewarm(answers);
+        }
+    }
+
+    /** A voice with number word units, speaking spelled out results */
+    @State(Scope.Thread)
+    public static class Units extends Voice {
+        @Setup
+        @Override
+        public void setUp() throws IOException {
+            super.setUp();
+            tts.loadUnits(NumberWords.VOCABULARY);
+            int scale = NumericContext.DEFAULT.getScale();
+            answers = Arrays.stream(Corpus.read(corpusFile))
+                    .map(expression -> ExpressionCompiler.compile(expression).evaluate(Corpus.ANSWER, true))
+                    .map(value -> new FormattedResult(value, scale).getSpoken()).toArray(String[]::new);
+        }
+    }
+
+    @Benchmark
+    public int synthesize(Voice voice) throws SynthesisException, IOException {
+        try (InputStream audio = voice.tts.synthesize(voice.next())) {
+            return audio.available();
+        }
+    }
+
+    @Benchmark
+    public int synthesizeCached(CachedVoice voice) throws SynthesisException, IOException {
+        try (InputStream audio = voice.tts.synthesize(voice.next())) {
+            return audio.available();
+        }
+    }
+
+    @Benchmark
+    public int concatenate(Units voice) throws SynthesisException, IOException {
+        try (InputStream audio = voice.tts.synthesize(voice.next())) {
+            return audio.available();
+        }
+    }
+
+    @Benchmark
+    public int firstAudio(Voice voice) throws SynthesisException, IOException {
+        try (InputStream audio = voice.tts.synthesize(voice.next())) {
+            return audio.read(voice.frame);
+        }
+    }
+
+    @Benchmark
+    public int firstAudioStreaming(Voice voice) throws SynthesisException, IOException {
+        try (InputStream audio = voice.tts.synthesizeStreaming(voice.next())) {
+            return audio.read(voice.frame);
+        } finally {
+            voice.tts.stopSpeaking();  // Drop the phrases still being synthesized
+        }
+    }
+}
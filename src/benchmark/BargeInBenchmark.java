@@ -0,0 +1,76 @@
+package benchmark;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Measures barge-in latency of AudioOutput: how long after an utterance is cancelled mid playback the output goes
+ * silent, and how long until the playback thread is free for the next utterance. Playback goes to a mock line that
+ * consumes audio in real time like a sound card, blocking writes while its buffer is full, so no audio hardware is
+ * needed. Exits with status 1 if any cancel-to-silence latency exceeds the bound, the same bound is asserted by
+ * AudioOutputTest on every build.
+ *
+ * Usage: java -cp out benchmark.BargeInBenchmark [--runs n] [--bound ms]
+ */
+
+import tts.AudioOutput;
+import tts.CachedAudio;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFormat;
+
+public class BargeInBenchmark {
+    public static final double BOUND_MILLIS = 20;  // Longest allowed cancel to silence latency
+
+    /** Main method */
+    public static void main(String[] args) throws InterruptedException {
+        int runs = 50;
+        double boundMillis = BOUND_MILLIS;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--runs") && i + 1 < args.length) runs = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--bound") && i + 1 < args.length) boundMillis = Double.parseDouble(args[++i]);
+        }
+
+        AudioFormat format = AudioOutput.DEFAULT_FORMAT;
+        MockLine line = new MockLine(format);
+        AudioOutput output = new AudioOutput(line, format);
+        CachedAudio clip = MockLine.tone(format, 3);
+        Random random = new Random(42);
+        long[] silence = new long[runs], released = new long[runs];
+
+        for (int run = 0; run < runs; run++) {
+            AudioOutput.Utterance utterance = output.play(clip, 0.5f);
+            while (!line.isAudible()) Thread.sleep(1);
+            Thread.sleep(100 + random.nextInt(300));  // Somewhere mid utterance
+
+            long cancelled = System.nanoTime();
+            utterance.cancel();
+            utterance.await();
+            released[run] = System.nanoTime() - cancelled;
+            silence[run] = Math.max(0, line.getAudibleUntil() - cancelled);
+        }
+        output.close();
+
+        report("cancel to silence", silence);
+        report("cancel to release", released);
+
+        Arrays.sort(silence);
+        if (silence[runs - 1] > boundMillis * 1e6) {
+            System.out.printf(Locale.ROOT, "cancel to silence exceeded %.1f ms%n", boundMillis);
+            System.exit(1);
+        }
+    }
+
+    private static void report(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf(Locale.ROOT, "%-18s p50 %8.3f ms, p99 %8.3f ms, max %8.3f ms%n", name,
+                percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,196 @@
+package benchmark;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Concurrency stress run for the evaluator core. Every thread repeatedly evaluates the corpus on fresh SpeechExpression
+ * sessions around one shared ExpressionEvaluator, so the shared compile and result caches are hit from all threads at
+ * once. A second run evaluates randomized expressions, different on every thread and invocation, without a result
+ * cache, so compiling and evaluating are concurrent rather than cache lookups. Each result is checked against a single
+ * threaded reference and throughput is reported per thread count. Exits with status 1 if any result differs, the
+ * build asserts the same in ConcurrentEvaluationTest.
+ *
+ * Usage: java -cp out benchmark.ConcurrencyBenchmark [seconds per thread count]
+ */
+
+import calculatorassets.ExpressionCompiler;
+import calculatorassets.ExpressionEvaluator;
+import calculatorassets.NumberWords;
+import calculatorassets.ResultCache;
+import calculatorassets.SpeechExpression;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrencyBenchmark {
+    private static final String[] EXPRESSIONS = {
+            "two plus two",
+            "five hundred twenty three times negative four point two five",
+            "the square root of one hundred forty four",
+            "left parentheses three plus four right parentheses divided by seven",
+            "the co see can't of pi over four",
+            "the co sign of two plus the see can't of one",
+            "twelve billion three hundred million four thousand five minus answer",
+            "five fact or eel to the power of two",
+            "the natural log of e plus the log of one thousand",
+            "fifty percent times eight hundred",
+            "answer times two",
+            "the sign of answer"
+    };
+    private static final String[] OPERATORS = {"plus", "minus", "times", "divided by"};
+
+    /** Evaluations of one worker thread until the given System.nanoTime(), returns how many were done */
+    private interface Worker {
+        long run(int thread, long end);
+    }
+
+    /** Main method */
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 2;
+        ExpressionEvaluator evaluator = new ExpressionEvaluator(new ResultCache(1024, 10, TimeUnit.MINUTES));
+        BigDecimal[] reference = evaluate(new SpeechExpression(new ExpressionEvaluator(null)));
+        int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+        long mismatches = 0;
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            mismatches += run(evaluator, reference, threads, TimeUnit.SECONDS.toNanos(seconds));
+        }
+
+        System.out.printf("result cache: %d hits, %d misses%n", evaluator.getResultCache().getHits(),
+                evaluator.getResultCache().getMisses());
+
+        ExpressionEvaluator uncached = new ExpressionEvaluator(null);
+        for (int threads = 1, run = 0; threads <= maxThreads; threads *= 2, run++) {
+            mismatches += runRandomized(uncached, run, threads, TimeUnit.SECONDS.toNanos(seconds));
+        }
+
+        if (mismatches > 0) {
+            System.out.println(mismatches + " results differed from the single threaded reference");
+            System.exit(1);
+        }
+    }
+
+    /** Run the corpus on the given number of threads for a fixed time, returns the number of wrong results */
+    private static long run(final ExpressionEvaluator evaluator, final BigDecimal[] reference, int threads,
+                            long durationNanos) throws InterruptedException {
+        final AtomicLong mismatches = new AtomicLong();
+
+        double rate = runThreads(threads, durationNanos, (thread, end) -> {
+            long count = 0;
+            while (System.nanoTime() < end) {
+                BigDecimal[] results = evaluate(new SpeechExpression(evaluator));
+                for (int i = 0; i < results.length; i++) {
+                    if (!results[i].equals(reference[i])) mismatches.incrementAndGet();
+                }
+                count += results.length;
+            }
+            return count;
+        });
+
+        System.out.printf("%3d threads: %12.0f evaluations/s, %d mismatches%n", threads, rate, mismatches.get());
+        return mismatches.get();
+    }
+
+    /**
+     * Evaluate randomized expressions on the given number of threads for a fixed time, then evaluate each one again on
+     * a single thread as the reference. Returns the number of wrong results
+     */
+    private static long runRandomized(final ExpressionEvaluator evaluator, final int run, int threads,
+                                      long durationNanos) throws InterruptedException {
+        final List<List<BigDecimal>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) results.add(new ArrayList<>());
+
+        double rate = runThreads(threads, durationNanos, (thread, end) -> {
+            List<BigDecimal> threadResults = results.get(thread);
+            while (System.nanoTime() < end) {
+                SpeechExpression session = new SpeechExpression(evaluator);
+                session.setAcousticRepresentation(randomExpression(seed(run, thread, threadResults.size())));
+                threadResults.add(session.getResult());
+            }
+            return threadResults.size();
+        });
+
+        // The reference compiles every expression again instead of taking trees compiled concurrently from the cache
+        ExpressionCompiler.getCache().clear();
+        ExpressionEvaluator reference = new ExpressionEvaluator(null);
+        long mismatches = 0;
+        for (int t = 0; t < threads; t++) {
+            List<BigDecimal> threadResults = results.get(t);
+            for (int i = 0; i < threadResults.size(); i++) {
+                SpeechExpression session = new SpeechExpression(reference);
+                session.setAcousticRepresentation(randomExpression(seed(run, t, i)));
+                if (!Objects.equals(threadResults.get(i), session.getResult())) mismatches++;
+            }
+        }
+
+        System.out.printf("%3d threads: %12.0f evaluations/s, %d mismatches (randomized, uncached)%n", threads, rate,
+                mismatches);
+        return mismatches;
+    }
+
+    /** Start the workers together and wait for them to finish, returns the evaluations per second of all of them */
+    private static double runThreads(int threads, final long durationNanos, final Worker worker)
+            throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicLong evaluations = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            Thread workerThread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                evaluations.addAndGet(worker.run(thread, System.nanoTime() + durationNanos));
+            });
+            workerThread.start();
+            workers.add(workerThread);
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread workerThread : workers) workerThread.join();
+        return evaluations.get() / ((System.nanoTime() - startTime) / 1e9);
+    }
+
+    /** Seed of the i-th randomized expression of a thread, different for every run, thread and invocation */
+    private static long seed(int run, int thread, int i) {
+        return (long) run << 48 | (long) thread << 32 | i;
+    }
+
+    /** Two to four numbers, some of them square roots, joined by arithmetic operators */
+    private static String randomExpression(long seed) {
+        Random random = new Random(seed);
+        StringBuilder expression = new StringBuilder(randomOperand(random));
+
+        for (int operands = 1 + random.nextInt(3); operands > 0; operands--) {
+            expression.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ')
+                    .append(randomOperand(random));
+        }
+        return expression.toString();
+    }
+
+    /** Number below a million with up to two decimals, sometimes under a square root */
+    private static String randomOperand(Random random) {
+        String number = NumberWords.toWords(BigDecimal.valueOf(random.nextInt(1000000), random.nextInt(3)));
+        return random.nextInt(4) == 0 ? "the square root of " + number : number;
+    }
+
+    /** Evaluate the corpus in order, on a fresh session "answer" always refers to the same values */
+    private static BigDecimal[] evaluate(SpeechExpression session) {
+        BigDecimal[] results = new BigDecimal[EXPRESSIONS.length];
+
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            session.setAcousticRepresentation(EXPRESSIONS[i]);
+            results[i] = session.getResult();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,59 @@
+package benchmark;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Measures the per-utterance cost of turning a hypothesis into tokens (SpeechLexer.lex), the step every uncached
+ * expression starts with. Reports mean latency and bytes allocated per utterance.
+ *
+ * Usage: java -cp out benchmark.LexerBenchmark [iterations]
+ */
+
+import calculatorassets.SpeechLexer;
+
+import java.lang.management.ManagementFactory;
+
+public class LexerBenchmark {
+    private static final String[] UTTERANCES = {
+            "two plus two",
+            "five hundred twenty three times negative four point two five",
+            "the square root of one hundred forty four",
+            "left parentheses three plus four right parentheses divided by seven",
+            "the co see can't of pi over four",
+            "the co sign of two plus the see can't of one",
+            "twelve billion three hundred million four thousand five minus answer",
+            "five fact or eel to the power of two",
+            "the natural log of e plus the log of one thousand",
+            "fifty percent times eight hundred"
+    };
+
+    /** Main method */
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+
+        long tokens = run(iterations / 10);  // Warm up
+        long startBytes = allocatedBytes();
+        long startTime = System.nanoTime();
+        tokens += run(iterations);
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = allocatedBytes() - startBytes;
+
+        System.out.printf("utterances: %d (%d tokens)%n", iterations, tokens);
+        System.out.printf("latency:    %.1f ns/utterance%n", (double) elapsed / iterations);
+        System.out.printf("allocation: %d bytes/utterance%n", allocated / iterations);
+    }
+
+    /** Lex the utterance corpus, returns the number of tokens so the JIT can't drop the work */
+    private static long run(int iterations) {
+        long tokens = 0;
+        for (int i = 0; i < iterations; i++) {
+            tokens += SpeechLexer.lex(UTTERANCES[i % UTTERANCES.length]).length;
+        }
+        return tokens;
+    }
+
+    /** Bytes allocated so far by the current thread */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,525 @@
+package benchmark;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * End to end benchmark of the voice path without a microphone or a speaker: commands are generated at random from the
+ * recognizer's own grammar (commands.gram and the expression grammar it imports, following the grammar's weights),
+ * spoken by MaryTTS, and the audio is fed to a StreamSpeechRecognizer with the same Configuration as VoiceCalculator.
+ * Every hypothesis goes through the decision logic of a session and its answer is synthesized, just like a live
+ * command, so a run covers recognition, dispatch, evaluation and synthesis together and can be repeated on any
+ * machine, fully offline.
+ *
+ * The corpus is synthesized up front with the audio cache off, each command padded with silence so the decoder's
+ * endpointer sees it end. Commands are then decoded one at a time, as fast as the decoder reads or, with --realtime,
+ * at the pace a microphone would deliver them. Each command gets fresh sessions, so a misrecognition doesn't carry
+ * over into later answers.
+ *
+ * Reported:
+ * - word accuracy: 1 - (substituted, inserted and deleted words) / words spoken, and the share of commands heard
+ *   exactly
+ * - response agreement: commands answered the same as a session given the spoken text itself
+ * - real time factor: decoding time over audio duration
+ * - latency percentiles of recognition (from the end of the command's audio being read until its hypothesis),
+ *   synthesis of the answer (until its first audio is ready) and end to end (from the end of the command until the
+ *   answer's first audio is ready), the dispatch, lexing and evaluation stages from Metrics
+ * Per command results are written as "<command>\t<hypothesis>\t<response>\t<end to end ms>".
+ *
+ * Needs the models and MaryTTS voice VoiceCalculator uses. --corpus only prints the generated commands.
+ *
+ * Usage: java -cp <classpath> benchmark.LoopbackBenchmark [-n commands] [--seed n] [--realtime] [-g grammar directory]
+ *        [-o results file] [--corpus]
+ */
+
+import calculatorassets.ExpressionEvaluator;
+import calculatorassets.SpeechExpression;
+import main.CalculatorSession;
+import main.FileRecognizer;
+import main.VoiceCalculator;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import tts.AudioCache;
+import tts.CachedAudio;
+import tts.TextToSpeech;
+
+import edu.cmu.sphinx.api.Configuration;
+import edu.cmu.sphinx.api.SpeechResult;
+import edu.cmu.sphinx.api.StreamSpeechRecognizer;
+import edu.cmu.sphinx.jsgf.JSGFGrammarParseException;
+import edu.cmu.sphinx.jsgf.JSGFRuleGrammar;
+import edu.cmu.sphinx.jsgf.JSGFRuleGrammarFactory;
+import edu.cmu.sphinx.jsgf.JSGFRuleGrammarManager;
+import edu.cmu.sphinx.jsgf.parser.JSGFParser;
+import edu.cmu.sphinx.jsgf.rule.JSGFRule;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleAlternatives;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleCount;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleName;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleSequence;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleTag;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleToken;
+import marytts.exceptions.SynthesisException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+public class LoopbackBenchmark {
+    private static final String START_RULE = "command";
+    private static final String WAKE_RULE = "keyphrase";  // Wake phrase, not a command
+    private static final int MAX_WORDS = 30;  // Longer commands are generated again, nobody says them in one go
+    private static final double LEADING_SILENCE_SECONDS = 0.5;
+    private static final double TRAILING_SILENCE_SECONDS = 1.0;
+    private static final AudioFormat FORMAT = FileRecognizer.DECODER_FORMAT;
+    private static final double BYTES_PER_SECOND = FORMAT.getFrameRate() * FORMAT.getFrameSize();
+
+    private final String grammarPath;
+    private final boolean realtime;
+    private final LatencyHistogram recognition = new LatencyHistogram("recognition");
+    private final LatencyHistogram synthesis = new LatencyHistogram("answer synthesis");
+    private final LatencyHistogram endToEnd = new LatencyHistogram("end to end");
+    private long wordErrors, words, sentencesCorrect, responsesAgreeing, commands, audioBytes, decodeNanos;
+
+    /** Constructor for class, realtime feeds the audio at the pace a microphone would */
+    public LoopbackBenchmark(String grammarPath, boolean realtime) {
+        this.grammarPath = grammarPath;
+        this.realtime = realtime;
+    }
+
+    /** Speak every command, recognize and answer it, writing per command results to output */
+    public void run(List<String> corpus, Writer output) throws IOException {
+        TextToSpeech tts = new TextToSpeech();
+        tts.setVoice("cmu-rms-hsmm");
+
+        // Speak the corpus first, so synthesizing it isn't measured and doesn't fill the audio cache
+        AudioCache cache = tts.getAudioCache();
+        tts.setAudioCache(null);
+        List<byte[]> spoken = new ArrayList<>(corpus.size());
+        for (String command : corpus) spoken.add(speak(tts, command));
+        tts.setAudioCache(cache);
+
+        Configuration configuration = VoiceCalculator.createConfiguration();
+        configuration.setGrammarPath(grammarPath);
+        StreamSpeechRecognizer recognizer = new StreamSpeechRecognizer(configuration);
+        ExpressionEvaluator evaluator = VoiceCalculator.createEvaluator(grammarPath);
+
+        for (int i = 0; i < corpus.size(); i++) {
+            String command = corpus.get(i);
+            List<String> expected = new ArrayList<>();
+            new CalculatorSession(new SpeechExpression(evaluator), expected::add).makeDecision(command);
+
+            Result result = recognize(recognizer, evaluator, tts, spoken.get(i));
+            int errors = wordErrors(command, result.hypothesis);
+            commands++;
+            words += command.split(" ").length;
+            wordErrors += errors;
+            if (errors == 0) sentencesCorrect++;
+            if (String.join(" ", expected).equals(result.response)) responsesAgreeing++;
+            audioBytes += spoken.get(i).length;
+
+            output.write(command + '\t' + result.hypothesis + '\t' + result.response + '\t' +
+                    String.format(Locale.ROOT, "%.1f", result.endToEndNanos / 1e6) + '\n');
+        }
+        output.flush();
+    }
+
+    /** Get the results of the run */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        double seconds = audioBytes / BYTES_PER_SECOND;
+        report.append(String.format(Locale.ROOT, "commands:           %d (%.1f s of audio)%n", commands, seconds));
+        report.append(String.format(Locale.ROOT, "word accuracy:      %.1f%% (%d errors in %d words)%n",
+                100 - percent(wordErrors, words), wordErrors, words));
+        report.append(String.format(Locale.ROOT, "sentence accuracy:  %.1f%%%n", percent(sentencesCorrect, commands)));
+        report.append(String.format(Locale.ROOT, "response agreement: %.1f%%%n",
+                percent(responsesAgreeing, commands)));
+        report.append(String.format(Locale.ROOT, "real time factor:   %.3f%s%n", decodeNanos / 1e9 / seconds,
+                realtime ? " (paced)" : ""));
+
+        for (LatencyHistogram histogram : Arrays.asList(recognition, synthesis, endToEnd, Metrics.DISPATCH,
+                Metrics.LEXING, Metrics.EVALUATION))
+            report.append(histogram.summary()).append('\n');
+        return report.toString().trim();
+    }
+
+    /** Synthesize a command the way the grammar's words are meant to be said, padded with silence */
+    private static byte[] speak(TextToSpeech tts, String command) throws IOException {
+        try (AudioInputStream synthesized = tts.synthesize(SpeechExpression.pronounce(command))) {
+            AudioInputStream audio = synthesized.getFormat().matches(FORMAT) ? synthesized :
+                    AudioSystem.getAudioInputStream(FORMAT, synthesized);
+            byte[] pcm = CachedAudio.read(audio).getPcm();
+            int leading = silence(LEADING_SILENCE_SECONDS), trailing = silence(TRAILING_SILENCE_SECONDS);
+
+            byte[] padded = new byte[leading + pcm.length + trailing];
+            System.arraycopy(pcm, 0, padded, leading, pcm.length);
+            return padded;
+        } catch (SynthesisException ex) {
+            throw new RuntimeException("Error synthesizing \"" + command + "\"", ex);
+        }
+    }
+
+    /** Bytes of a whole number of frames lasting the given time */
+    private static int silence(double seconds) {
+        return (int) (seconds * FORMAT.getFrameRate()) * FORMAT.getFrameSize();
+    }
+
+    /** Recognize the audio of one command, answering every hypothesis, and time it */
+    private Result recognize(StreamSpeechRecognizer recognizer, ExpressionEvaluator evaluator, TextToSpeech tts,
+                             byte[] pcm) throws IOException {
+        List<String> hypotheses = new ArrayList<>(), responses = new ArrayList<>();
+        CalculatorSession session = new CalculatorSession(new SpeechExpression(evaluator), responses::add);
+        LoopbackStream audio = new LoopbackStream(pcm, pcm.length - silence(TRAILING_SILENCE_SECONDS), realtime);
+        long answered = -1;
+
+        recognizer.startRecognition(audio);
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                SpeechResult result = recognizer.getResult();
+                decodeNanos += System.nanoTime() - start;
+                if (result == null) break;
+
+                String hypothesis = result.getHypothesis();
+                if (hypothesis.isEmpty()) continue;
+                hypotheses.add(hypothesis);
+                recognition.record(System.nanoTime() - audio.getEndOfSpeech());
+
+                int before = responses.size();
+                session.makeDecision(hypothesis);
+                for (int i = before; i < responses.size(); i++) {
+                    start = System.nanoTime();
+                    try (AudioInputStream answer = tts.prepare(responses.get(i))) {
+                        answer.read(new byte[answer.getFormat().getFrameSize()]);  // Streamed answers block on it
+                        answered = System.nanoTime();
+                        synthesis.record(answered - start);
+                    } catch (SynthesisException ex) {
+                        throw new RuntimeException("Error synthesizing \"" + responses.get(i) + "\"", ex);
+                    } finally {
+                        tts.stopSpeaking();  // Drop the phrases still being synthesized
+                    }
+                }
+            }
+        } finally {
+            recognizer.stopRecognition();
+        }
+
+        long endToEndNanos = answered == -1 ? 0 : Math.max(0, answered - audio.getEndOfSpeech());
+        if (answered != -1) endToEnd.record(endToEndNanos);
+        return new Result(String.join(" ", hypotheses), String.join(" ", responses), endToEndNanos);
+    }
+
+    /** Substituted, inserted and deleted words of a hypothesis against the words spoken */
+    static int wordErrors(String reference, String hypothesis) {
+        String[] expected = reference.split(" "), heard = hypothesis.isEmpty() ? new String[0] : hypothesis.split(" ");
+        int[] previous = new int[heard.length + 1], current = new int[heard.length + 1];
+        for (int j = 0; j <= heard.length; j++) previous[j] = j;
+
+        for (int i = 1; i <= expected.length; i++) {
+            current[0] = i;
+            for (int j = 1; j <= heard.length; j++) {
+                int substitution = previous[j - 1] + (expected[i - 1].equals(heard[j - 1]) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[heard.length];
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    /* ---------------------------------------------------- Loopback ------------------------------------------------ */
+
+    /** What was heard and answered for one command */
+    private static final class Result {
+        private final String hypothesis;
+        private final String response;
+        private final long endToEndNanos;
+
+        private Result(String hypothesis, String response, long endToEndNanos) {
+            this.hypothesis = hypothesis;
+            this.response = response;
+            this.endToEndNanos = endToEndNanos;
+        }
+    }
+
+    /** Synthesized audio as the decoder reads it, noting when the end of the command is read */
+    private static final class LoopbackStream extends InputStream {
+        private final byte[] pcm;
+        private final int speechEnd;
+        private final boolean paced;
+        private int position = 0;
+        private long start = -1;
+        private long endOfSpeech = -1;
+
+        private LoopbackStream(byte[] pcm, int speechEnd, boolean paced) {
+            this.pcm = pcm;
+            this.speechEnd = speechEnd;
+            this.paced = paced;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position == pcm.length) return -1;
+            if (start == -1) start = System.nanoTime();
+
+            int nRead = Math.min(length, pcm.length - position);
+            if (paced) {
+                // Like a microphone, audio can't be read before it has been spoken
+                long wait = (long) ((position + nRead) / BYTES_PER_SECOND * 1e9) - (System.nanoTime() - start);
+                try {
+                    if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted reading", ex);
+                }
+            }
+            System.arraycopy(pcm, position, buffer, offset, nRead);
+            position += nRead;
+            if (position >= speechEnd && endOfSpeech == -1) endOfSpeech = System.nanoTime();
+            return nRead;
+        }
+
+        /** Get when the end of the command was read, a System.nanoTime(), or now if it hasn't been yet */
+        private long getEndOfSpeech() {
+            return endOfSpeech == -1 ? System.nanoTime() : endOfSpeech;
+        }
+    }
+
+    /* ---------------------------------------------------- Corpus -------------------------------------------------- */
+
+    /**
+     * Random sentences of a JSGF grammar and the grammars it imports, alternatives picked by their weights. Past
+     * MAX_DEPTH nested rules the shortest way out is taken, so recursive rules like <group> always end
+     */
+    static final class SentenceGenerator {
+        private static final int MAX_DEPTH = 8;
+        private static final int UNBOUNDED = Integer.MAX_VALUE / 2;
+
+        private final Map<String, JSGFRuleGrammar> grammars = new HashMap<>();
+        private final Map<String, Integer> shortest = new HashMap<>();
+        private final Random random;
+
+        /** Load grammar files into one set of grammars, imported ones first */
+        SentenceGenerator(List<File> grammarFiles, Random random) {
+            this.random = random;
+            JSGFRuleGrammarManager manager = new JSGFRuleGrammarManager();
+            for (File grammarFile : grammarFiles) {
+                try {
+                    JSGFRuleGrammar grammar = JSGFParser.newGrammarFromJSGF(grammarFile.toURI().toURL(),
+                            new JSGFRuleGrammarFactory(manager));
+                    grammars.put(grammar.getName(), grammar);
+                } catch (IOException | JSGFGrammarParseException ex) {
+                    throw new RuntimeException("Error loading grammar " + grammarFile, ex);
+                }
+            }
+
+            // Shortest sentence of every rule, counted up until no rule gets any shorter
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (JSGFRuleGrammar grammar : grammars.values()) {
+                    for (String rule : grammar.getRuleNames()) {
+                        int length = shortest(grammar.getRule(rule), grammar.getName());
+                        if (length < shortest.getOrDefault(key(grammar.getName(), rule), UNBOUNDED)) {
+                            shortest.put(key(grammar.getName(), rule), length);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        /** Generate a sentence of a rule of the given grammar, leaving out alternatives that are excluded rules */
+        String generate(String grammar, String rule, List<String> excluded) {
+            List<String> words = new ArrayList<>();
+            JSGFRule start = rule(grammar, rule);
+            if (start instanceof JSGFRuleAlternatives) {
+                List<JSGFRule> choices = new ArrayList<>();
+                List<Float> weights = new ArrayList<>();
+                JSGFRuleAlternatives alternatives = (JSGFRuleAlternatives) start;
+                for (int i = 0; i < alternatives.getRules().size(); i++) {
+                    JSGFRule choice = alternatives.getRules().get(i), only = choice;
+                    while (only instanceof JSGFRuleSequence && ((JSGFRuleSequence) only).getRules().size() == 1)
+                        only = ((JSGFRuleSequence) only).getRules().get(0);  // The parser wraps every alternative
+                    if (only instanceof JSGFRuleName && excluded.contains(((JSGFRuleName) only).getSimpleRuleName()))
+                        continue;
+                    choices.add(choice);
+                    weights.add(alternatives.getWeights() == null ? 1f : alternatives.getWeights().get(i));
+                }
+                generate(choices.get(pick(weights)), grammar, 1, words);
+            } else generate(start, grammar, 1, words);
+            return String.join(" ", words);
+        }
+
+        private void generate(JSGFRule rule, String grammar, int depth, List<String> words) {
+            if (rule instanceof JSGFRuleToken) {
+                words.addAll(Arrays.asList(((JSGFRuleToken) rule).getText().trim().split("\\s+")));
+            } else if (rule instanceof JSGFRuleName) {
+                JSGFRuleName name = (JSGFRuleName) rule;
+                String owner = grammarOf(name, grammar);
+                generate(rule(owner, name.getSimpleRuleName()), owner, depth + 1, words);
+            } else if (rule instanceof JSGFRuleSequence) {
+                for (JSGFRule part : ((JSGFRuleSequence) rule).getRules()) generate(part, grammar, depth, words);
+            } else if (rule instanceof JSGFRuleAlternatives) {
+                JSGFRuleAlternatives alternatives = (JSGFRuleAlternatives) rule;
+                List<JSGFRule> choices = alternatives.getRules();
+                int choice = 0;
+                if (depth > MAX_DEPTH) {
+                    for (int i = 1; i < choices.size(); i++) {
+                        if (shortest(choices.get(i), grammar) < shortest(choices.get(choice), grammar)) choice = i;
+                    }
+                } else if (alternatives.getWeights() == null) choice = random.nextInt(choices.size());
+                else choice = pick(alternatives.getWeights());
+                generate(choices.get(choice), grammar, depth, words);
+            } else if (rule instanceof JSGFRuleCount) {
+                JSGFRuleCount count = (JSGFRuleCount) rule;
+                boolean optional = count.getCount() != JSGFRuleCount.ONCE_OR_MORE;
+                int times = optional && (depth > MAX_DEPTH || random.nextBoolean()) ? 0 : 1;
+                while (times > 0 && depth <= MAX_DEPTH && count.getCount() != JSGFRuleCount.OPTIONAL &&
+                        random.nextInt(4) == 0)
+                    times++;  // Repeated now and then
+                for (int i = 0; i < times; i++) generate(count.getRule(), grammar, depth, words);
+            } else if (rule instanceof JSGFRuleTag) {
+                generate(((JSGFRuleTag) rule).getRule(), grammar, depth, words);
+            }
+        }
+
+        /** Words in the shortest sentence of a rule, as far as the rules it names are known */
+        private int shortest(JSGFRule rule, String grammar) {
+            if (rule instanceof JSGFRuleToken) {
+                return ((JSGFRuleToken) rule).getText().trim().split("\\s+").length;
+            } else if (rule instanceof JSGFRuleName) {
+                JSGFRuleName name = (JSGFRuleName) rule;
+                return shortest.getOrDefault(key(grammarOf(name, grammar), name.getSimpleRuleName()), UNBOUNDED);
+            } else if (rule instanceof JSGFRuleSequence) {
+                int length = 0;
+                for (JSGFRule part : ((JSGFRuleSequence) rule).getRules())
+                    length = Math.min(UNBOUNDED, length + shortest(part, grammar));
+                return length;
+            } else if (rule instanceof JSGFRuleAlternatives) {
+                int length = UNBOUNDED;
+                for (JSGFRule choice : ((JSGFRuleAlternatives) rule).getRules())
+                    length = Math.min(length, shortest(choice, grammar));
+                return length;
+            } else if (rule instanceof JSGFRuleCount) {
+                JSGFRuleCount count = (JSGFRuleCount) rule;
+                return count.getCount() == JSGFRuleCount.ONCE_OR_MORE ? shortest(count.getRule(), grammar) : 0;
+            } else if (rule instanceof JSGFRuleTag) {
+                return shortest(((JSGFRuleTag) rule).getRule(), grammar);
+            }
+            return 0;
+        }
+
+        /** Index of a weight, picked in proportion to the weights */
+        private int pick(List<Float> weights) {
+            float total = 0;
+            for (float weight : weights) total += weight;
+            float target = random.nextFloat() * total;
+            for (int i = 0; i < weights.size() - 1; i++) {
+                target -= weights.get(i);
+                if (target < 0) return i;
+            }
+            return weights.size() - 1;
+        }
+
+        private JSGFRule rule(String grammar, String rule) {
+            JSGFRuleGrammar owner = grammars.get(grammar);
+            JSGFRule found = owner == null ? null : owner.getRule(rule);
+            if (found == null) throw new RuntimeException("No rule <" + grammar + "." + rule + ">");
+            return found;
+        }
+
+        /** Grammar a rule name refers to, unqualified names are rules of the grammar they're used in */
+        private static String grammarOf(JSGFRuleName name, String grammar) {
+            return name.getSimpleGrammarName() == null ? grammar : name.getSimpleGrammarName();
+        }
+
+        private static String key(String grammar, String rule) {
+            return grammar + "." + rule;
+        }
+    }
+
+    /* -------------------------------------------------------------------------------------------------------------- */
+
+    /** Main method */
+    public static void main(String[] args) throws IOException {
+        int count = 100;
+        long seed = 1;
+        boolean realtime = false, corpusOnly = false;
+        String grammarPath = VoiceCalculator.GRAMMAR_PATH, output = "loopback-results.tsv";
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-n") && i + 1 < args.length) count = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--seed") && i + 1 < args.length) seed = Long.parseLong(args[++i]);
+            else if (args[i].equals("--realtime")) realtime = true;
+            else if (args[i].equals("--corpus")) corpusOnly = true;
+            else if ((args[i].equals("-g") || args[i].equals("--grammar")) && i + 1 < args.length)
+                grammarPath = args[++i];
+            else if ((args[i].equals("-o") || args[i].equals("--output")) && i + 1 < args.length)
+                output = args[++i];
+            else {
+                System.err.println("Usage: java benchmark.LoopbackBenchmark [-n commands] [--seed n] [--realtime] " +
+                        "[-g grammar directory] [-o results file] [--corpus]");
+                System.exit(2);
+            }
+        }
+
+        SentenceGenerator generator = new SentenceGenerator(Arrays.asList(new File(grammarPath,
+                "equationSyntax.gram"), new File(grammarPath, "commands.gram")), new Random(seed));
+        List<String> corpus = new ArrayList<>(count);
+        while (corpus.size() < count) {
+            String command = generator.generate("commands", START_RULE, Collections.singletonList(WAKE_RULE));
+            if (command.split(" ").length <= MAX_WORDS) corpus.add(command);
+        }
+        if (corpusOnly) {
+            for (String command : corpus) System.out.println(command);
+            return;
+        }
+
+        // The speech libraries print to stdout, keep that out of the results
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        LoopbackBenchmark benchmark = new LoopbackBenchmark(grammarPath, realtime);
+        try (Writer results = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output),
+                StandardCharsets.UTF_8))) {
+            benchmark.run(corpus, results);
+        } finally {
+            System.setOut(stdout);
+        }
+        System.out.println(benchmark.report());
+        System.out.println("Results written to " + output);
+    }
+}
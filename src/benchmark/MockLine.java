@@ -0,0 +1,263 @@
+package benchmark;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * SourceDataLine consuming audio in real time like a sound card, blocking writes while its buffer is full, so
+ * AudioOutput can be measured (BargeInBenchmark) and tested (AudioOutputTest) without audio hardware. It keeps track
+ * of when the audio written so far stops sounding, so the time output actually went silent can be read after the fact.
+ */
+
+import tts.CachedAudio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Control;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.LineListener;
+import javax.sound.sampled.SourceDataLine;
+
+public final class MockLine implements SourceDataLine {
+    private final Object lock = new Object();
+    private final double bytesPerNano;
+    private AudioFormat format;
+    private int bufferSize;
+    private boolean open;
+    private boolean running;
+    private double buffered;  // Bytes written but not played yet
+    private long updated;  // When buffered was last brought up to date
+    private long flushes;
+    private volatile long audibleUntil;
+
+    /** Construct a line playing in the given format until opened with another one */
+    public MockLine(AudioFormat format) {
+        this.format = format;
+        this.bytesPerNano = format.getFrameRate() * format.getFrameSize() / 1e9;
+        this.bufferSize = (int) (format.getFrameRate() * format.getFrameSize());
+    }
+
+    /** A 440 Hz tone to play */
+    public static CachedAudio tone(AudioFormat format, int seconds) {
+        int samples = (int) format.getSampleRate() * seconds;
+        byte[] pcm = new byte[samples * 2];
+
+        for (int i = 0; i < samples; i++) {
+            short sample = (short) (8000 * Math.sin(2 * Math.PI * 440 * i / format.getSampleRate()));
+            pcm[2 * i + (format.isBigEndian() ? 0 : 1)] = (byte) (sample >> 8);
+            pcm[2 * i + (format.isBigEndian() ? 1 : 0)] = (byte) sample;
+        }
+        return new CachedAudio(format, pcm);
+    }
+
+    /** Get if audio written so far is still sounding */
+    public boolean isAudible() {
+        return audibleUntil > System.nanoTime();
+    }
+
+    /** Get the System.nanoTime() at which the audio written so far stops (or stopped) sounding */
+    public long getAudibleUntil() {
+        return audibleUntil;
+    }
+
+    /** Play out what the time since the last update allowed, call with lock held */
+    private long advance() {
+        long now = System.nanoTime();
+        if (running) buffered = Math.max(0, buffered - (now - updated) * bytesPerNano);
+        updated = now;
+        return now;
+    }
+
+    /** Record when output goes silent after a change at now, call with lock held */
+    private void changed(long now, boolean wasAudible) {
+        if (running && buffered > 0) audibleUntil = now + (long) (buffered / bytesPerNano);
+        else if (wasAudible) audibleUntil = now;
+    }
+
+    @Override
+    public void open(AudioFormat format, int bufferSize) {
+        synchronized (lock) {
+            this.format = format;
+            this.bufferSize = bufferSize;
+            open = true;
+        }
+    }
+
+    @Override
+    public void open(AudioFormat format) {
+        open(format, bufferSize);
+    }
+
+    @Override
+    public void open() {
+        open(format, bufferSize);
+    }
+
+    @Override
+    public int write(byte[] b, int off, int len) {
+        synchronized (lock) {
+            long flushesAtStart = flushes;
+            int written = 0;
+
+            while (written < len && open && flushes == flushesAtStart) {
+                long now = advance();
+                boolean wasAudible = running && buffered > 0;
+                int space = (int) Math.min(len - written, bufferSize - Math.ceil(buffered));
+
+                if (space > 0) {
+                    buffered += space;
+                    written += space;
+                    changed(now, wasAudible);
+                } else {
+                    try {
+                        lock.wait(0, 250000);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            return written;
+        }
+    }
+
+    @Override
+    public void drain() {
+        while (true) {
+            synchronized (lock) {
+                advance();
+                if (!running || buffered <= 0 || !open) return;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        synchronized (lock) {
+            long now = advance();
+            boolean wasAudible = running && buffered > 0;
+            buffered = 0;
+            flushes++;
+            changed(now, wasAudible);
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void start() {
+        synchronized (lock) {
+            long now = advance();
+            running = true;
+            changed(now, false);
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            long now = advance();
+            boolean wasAudible = running && buffered > 0;
+            running = false;
+            changed(now, wasAudible);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            stop();
+            open = false;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    @Override
+    public boolean isActive() {
+        return isAudible();
+    }
+
+    @Override
+    public boolean isOpen() {
+        synchronized (lock) {
+            return open;
+        }
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public int available() {
+        synchronized (lock) {
+            advance();
+            return bufferSize - (int) Math.ceil(buffered);
+        }
+    }
+
+    @Override
+    public int getFramePosition() {
+        return 0;
+    }
+
+    @Override
+    public long getLongFramePosition() {
+        return 0;
+    }
+
+    @Override
+    public long getMicrosecondPosition() {
+        return 0;
+    }
+
+    @Override
+    public float getLevel() {
+        return AudioSystem.NOT_SPECIFIED;
+    }
+
+    @Override
+    public Line.Info getLineInfo() {
+        return new DataLine.Info(SourceDataLine.class, format);
+    }
+
+    @Override
+    public Control[] getControls() {
+        return new Control[0];
+    }
+
+    @Override
+    public boolean isControlSupported(Control.Type control) {
+        return false;
+    }
+
+    @Override
+    public Control getControl(Control.Type control) {
+        throw new IllegalArgumentException("Unsupported control type: " + control);
+    }
+
+    @Override
+    public void addLineListener(LineListener listener) {
+    }
+
+    @Override
+    public void removeLineListener(LineListener listener) {
+    }
+}
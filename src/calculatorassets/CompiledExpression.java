@@ -0,0 +1,378 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Immutable expression tree produced by ExpressionCompiler. "answer" is kept as a variable and bound when the
+ * expression is evaluated, so one compiled expression can be reused for any previous result and angle mode.
+ *
+ * Every node can be evaluated two ways: exactly with BigDecimal to a MathContext's precision, or approximately with
+ * primitive doubles while tracking an upper bound on the absolute error. The approximate result is only used when
+ * that bound can't change the result once rounded to the context's scale, otherwise the exact path is taken.
+ */
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+public final class CompiledExpression {
+    private static final double TWO_TO_THE_52 = 4503599627370496.0;
+    private static final double LN_10 = Math.log(10);
+    private static final double[] POWERS_OF_TEN = new double[23];  // Exactly representable powers of ten
+    private static final double[] FACTORIALS = new double[19];  // Exactly representable factorials
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        FACTORIALS[0] = 1;
+        for (int i = 1; i < FACTORIALS.length; i++) FACTORIALS[i] = FACTORIALS[i - 1] * i;
+    }
+
+    private final String convertedExpression;
+    private final Node root;
+    private final boolean usesAnswer;
+
+    CompiledExpression(String convertedExpression, Node root, boolean usesAnswer) {
+        this.convertedExpression = convertedExpression;
+        this.root = root;
+        this.usesAnswer = usesAnswer;
+    }
+
+    /** Evaluate with the given value for "answer" and angle mode using the default numeric context */
+    public BigDecimal evaluate(BigDecimal answer, boolean isRad) {
+        return evaluate(answer, isRad, NumericContext.DEFAULT);
+    }
+
+    /** Evaluate with the given value for "answer", angle mode and numeric context */
+    public BigDecimal evaluate(BigDecimal answer, boolean isRad, NumericContext numeric) {
+        if (numeric.getBackend() == NumericContext.Backend.DOUBLE) {
+            Approximation approximation = new Approximation(usesAnswer ? answer : null, isRad);
+            double value = root.approximate(approximation);
+
+            if (approximation.isReliable(value, numeric.getScale()))
+                return value == Math.rint(value) && Math.abs(value) < TWO_TO_THE_52 ?
+                        BigDecimal.valueOf((long) value) : new BigDecimal(value);
+        }
+        return root.evaluate(answer, isRad, numeric.getMathContext());
+    }
+
+    /** Get the symbolic expression, i.e. "sqrt answer + 2" */
+    public String getConvertedExpression() {
+        return convertedExpression;
+    }
+
+    /** Check if the expression refers to "answer" */
+    public boolean usesAnswer() {
+        return usesAnswer;
+    }
+
+    @Override
+    public String toString() {
+        return convertedExpression;
+    }
+
+    /* ------------------------------------------------ Double path ------------------------------------------------- */
+
+    /** State of one approximate evaluation, nodes report the error bound of the value they return in error */
+    static final class Approximation {
+        private final double answer;
+        private final double answerError;
+        private final boolean isRad;
+        private double error;
+
+        private Approximation(BigDecimal answer, boolean isRad) {
+            this.isRad = isRad;
+            if (answer == null) {
+                this.answer = 0;
+                this.answerError = 0;
+            } else {
+                this.answer = answer.doubleValue();
+                this.answerError = isExactDouble(answer, this.answer) ? 0 : Math.ulp(this.answer);
+            }
+        }
+
+        /** Check if value rounds to the same decimal places as the exact result would */
+        private boolean isReliable(double value, int scale) {
+            if (Double.isNaN(value) || Double.isInfinite(value) || Double.isNaN(error) || Double.isInfinite(error))
+                return false;
+            if (error == 0) return true;  // value is the exact result
+            if (scale >= POWERS_OF_TEN.length) return false;
+
+            double scaled = Math.abs(value) * POWERS_OF_TEN[scale];
+            if (scaled >= TWO_TO_THE_52) return false;  // Not enough bits left for the decimal places
+
+            // The exact result must not lie on the other side of a rounding midpoint
+            double scaledError = error * POWERS_OF_TEN[scale] + 2 * Math.ulp(scaled);
+            double fraction = scaled - Math.floor(scaled);
+            return Math.abs(fraction - 0.5) > scaledError;
+        }
+
+        /** Rounding error of one double operation */
+        private static double rounding(double value) {
+            return Math.ulp(value) / 2;
+        }
+    }
+
+    /** Check if a BigDecimal is exactly the double it was converted to, cheap for the common integer case */
+    private static boolean isExactDouble(BigDecimal value, double converted) {
+        if (value.scale() <= 0 && Math.abs(converted) < TWO_TO_THE_52) return true;
+        return !Double.isInfinite(converted) && value.compareTo(new BigDecimal(converted)) == 0;
+    }
+
+    /* ------------------------------------------------- Tree nodes ------------------------------------------------- */
+
+    /** Node of the expression tree */
+    abstract static class Node {
+        /** Evaluate exactly, to mathContext precision */
+        abstract BigDecimal evaluate(BigDecimal answer, boolean isRad, MathContext mathContext);
+
+        /** Evaluate approximately, setting approximation.error to the error bound of the returned value */
+        abstract double approximate(Approximation approximation);
+    }
+
+    /** Literal number */
+    static final class Constant extends Node {
+        private final BigDecimal value;
+        private final double approximateValue;
+        private final double error;
+
+        Constant(BigDecimal value) {
+            this.value = value;
+            this.approximateValue = value.doubleValue();
+            this.error = isExactDouble(value, approximateValue) ? 0 :
+                    value.subtract(new BigDecimal(approximateValue)).abs().doubleValue();
+        }
+
+        @Override
+        BigDecimal evaluate(BigDecimal answer, boolean isRad, MathContext mathContext) {
+            return value;
+        }
+
+        @Override
+        double approximate(Approximation approximation) {
+            approximation.error = error;
+            return approximateValue;
+        }
+    }
+
+    /** The "answer" variable */
+    static final class Answer extends Node {
+        static final Answer INSTANCE = new Answer();
+
+        private Answer() {
+        }
+
+        @Override
+        BigDecimal evaluate(BigDecimal answer, boolean isRad, MathContext mathContext) {
+            return answer;
+        }
+
+        @Override
+        double approximate(Approximation approximation) {
+            approximation.error = approximation.answerError;
+            return approximation.answer;
+        }
+    }
+
+    /** Two operand operators */
+    static final class Binary extends Node {
+        private final Token.Type operator;
+        private final Node left;
+        private final Node right;
+
+        Binary(Token.Type operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        BigDecimal evaluate(BigDecimal answer, boolean isRad, MathContext mathContext) {
+            BigDecimal x = left.evaluate(answer, isRad, mathContext);
+            BigDecimal y = right.evaluate(answer, isRad, mathContext);
+
+            switch (operator) {
+                case PLUS:
+                    return x.add(y, mathContext);
+                case MINUS:
+                    return x.subtract(y, mathContext);
+                case MULTIPLY:
+                    return x.multiply(y, mathContext);
+                case DIVIDE:
+                    return x.divide(y, mathContext);
+                case POWER:
+                    if (ExactArithmetic.isIntegerExponent(y))
+                        return ExactArithmetic.pow(x, y.intValueExact(), mathContext);
+                    return new BigDecimal(Math.pow(x.doubleValue(), y.doubleValue()), mathContext);
+                default:
+                    throw new IllegalStateException("Unexpected operator " + operator);
+            }
+        }
+
+        @Override
+        double approximate(Approximation approximation) {
+            double x = left.approximate(approximation);
+            double xError = approximation.error;
+            double y = right.approximate(approximation);
+            double yError = approximation.error;
+            double result;
+            double error;
+
+            switch (operator) {
+                case PLUS:
+                    result = x + y;
+                    error = xError + yError;
+                    break;
+                case MINUS:
+                    result = x - y;
+                    error = xError + yError;
+                    break;
+                case MULTIPLY:
+                    result = x * y;
+                    error = Math.abs(x) * yError + Math.abs(y) * xError + xError * yError;
+                    break;
+                case DIVIDE:
+                    result = x / y;
+                    error = Math.abs(y) > yError ?
+                            (Math.abs(x) * yError + Math.abs(y) * xError) / (y * y - Math.abs(y) * yError) :
+                            Double.POSITIVE_INFINITY;  // Divisor might be zero
+                    break;
+                case POWER:
+                    result = Math.pow(x, y);
+                    error = xError == 0 && yError == 0 ? 0 :
+                            Math.abs(y * result / x) * xError + Math.abs(result * Math.log(Math.abs(x))) * yError;
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected operator " + operator);
+            }
+
+            // Exact operands and an exactly representable result have no error at all, Math.pow is within an ulp
+            if (error == 0 && isExactOperation(x, y, result)) approximation.error = 0;
+            else approximation.error = error + (operator == Token.Type.POWER ? Math.ulp(result) :
+                    Approximation.rounding(result));
+            return result;
+        }
+
+        /** Check if a double operation on exact operands was exact, not tracked for division */
+        private boolean isExactOperation(double x, double y, double result) {
+            switch (operator) {
+                case PLUS:
+                    return result - x == y && result - y == x;
+                case MINUS:
+                    return result + y == x && x - result == y;
+                case MULTIPLY:
+                    return Math.abs(result) < TWO_TO_THE_52 && result == Math.rint(result) && x == Math.rint(x) &&
+                            y == Math.rint(y);
+                case POWER:  // Math.pow is exact for integers when the result is representable
+                    return Math.abs(result) < TWO_TO_THE_52 && result == Math.rint(result) && x == Math.rint(x) &&
+                            y == Math.rint(y) && y >= 0;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /** One operand prefix functions */
+    static final class Function extends Node {
+        private final Token.Type function;
+        private final Node operand;
+
+        Function(Token.Type function, Node operand) {
+            this.function = function;
+            this.operand = operand;
+        }
+
+        @Override
+        BigDecimal evaluate(BigDecimal answer, boolean isRad, MathContext mathContext) {
+            double x = operand.evaluate(answer, isRad, mathContext).doubleValue();
+            return new BigDecimal(apply(x, isRad ? x : Math.toRadians(x)), mathContext);
+        }
+
+        @Override
+        double approximate(Approximation approximation) {
+            double x = operand.approximate(approximation);
+            double xError = approximation.error;
+            double angle = approximation.isRad ? x : Math.toRadians(x);
+            double angleError = approximation.isRad ? xError : xError * (Math.PI / 180) + Math.ulp(angle);
+            double result = apply(x, angle);
+            double error;
+
+            switch (function) {
+                case SQRT:
+                    error = x > 0 ? xError / (2 * Math.sqrt(x)) : Math.sqrt(xError);
+                    break;
+                case LOG:
+                    error = xError / (Math.abs(x) * LN_10);
+                    break;
+                case LN:
+                    error = xError / Math.abs(x);
+                    break;
+                case SIN:
+                case COS:
+                    error = angleError;
+                    break;
+                case TAN:
+                case COT:
+                    error = angleError * (1 + result * result);
+                    break;
+                case CSC:
+                case SEC:
+                    error = angleError * result * result;
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected function " + function);
+            }
+
+            approximation.error = error + 2 * Math.ulp(result);  // Math functions are within an ulp or so
+            return result;
+        }
+
+        private double apply(double x, double angle) {
+            switch (function) {
+                case SQRT:
+                    return Math.sqrt(x);
+                case LOG:
+                    return Math.log10(x);
+                case LN:
+                    return Math.log(x);
+                case SIN:
+                    return Math.sin(angle);
+                case COS:
+                    return Math.cos(angle);
+                case TAN:
+                    return Math.tan(angle);
+                case CSC:
+                    return 1 / Math.sin(angle);
+                case SEC:
+                    return 1 / Math.cos(angle);
+                case COT:
+                    return 1 / Math.tan(angle);
+                default:
+                    throw new IllegalStateException("Unexpected function " + function);
+            }
+        }
+    }
+
+    /** Factorial postfix operator */
+    static final class Factorial extends Node {
+        private final Node operand;
+
+        Factorial(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        BigDecimal evaluate(BigDecimal answer, boolean isRad, MathContext mathContext) {
+            return new BigDecimal(ExactArithmetic.factorial(operand.evaluate(answer, isRad, mathContext)));
+        }
+
+        @Override
+        double approximate(Approximation approximation) {
+            double x = operand.approximate(approximation);
+
+            // Only exact integers with exactly representable factorials, anything else takes the exact path
+            if (approximation.error == 0 && x >= 0 && x < FACTORIALS.length && x == Math.rint(x))
+                return FACTORIALS[(int) x];
+            approximation.error = Double.POSITIVE_INFINITY;
+            return Double.NaN;
+        }
+    }
+}
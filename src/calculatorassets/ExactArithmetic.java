@@ -0,0 +1,119 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Exact integer kernel used by CompiledExpression for factorials and integer powers.
+ *
+ * Results are bounded to about MAX_RESULT_DIGITS digits before anything is computed, larger ones throw
+ * ArithmeticException, so no utterance can make the calculator compute or format numbers of unbounded size.
+ *
+ * Factorials come from a precomputed table for small n and from a binary splitting product tree above it, so the
+ * numbers multiplied together stay balanced in size. Integer powers are computed by squaring on BigDecimal, exactly
+ * while the result stays small and to the MathContext's precision (plus guard digits) once it doesn't.
+ */
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+final class ExactArithmetic {
+    static final int MAX_RESULT_DIGITS = 1000;  // Largest factorial or power computed, in decimal digits
+    static final int MAX_FACTORIAL = 449;  // Largest factorial with at most MAX_RESULT_DIGITS digits (997)
+    private static final int TABLE_SIZE = 128;  // Factorials below this are precomputed
+    private static final int SERIAL_GRAIN = 16;  // Ranges this small are multiplied directly
+    private static final long MAX_EXACT_POWER_DIGITS = 1000;  // Larger integer powers are rounded to the context
+    private static final BigInteger[] FACTORIALS = new BigInteger[TABLE_SIZE];
+
+    static {
+        FACTORIALS[0] = BigInteger.ONE;
+        for (int i = 1; i < TABLE_SIZE; i++) FACTORIALS[i] = FACTORIALS[i - 1].multiply(BigInteger.valueOf(i));
+    }
+
+    private ExactArithmetic() {
+    }
+
+    /** Factorial of x, non integers are truncated. Throws ArithmeticException past MAX_FACTORIAL */
+    static BigInteger factorial(BigDecimal x) {
+        if (x.signum() < 0) throw new RuntimeException("Cannot have a negative factorial!");
+        if (x.compareTo(BigDecimal.valueOf(MAX_FACTORIAL)) > 0)
+            throw new ArithmeticException("Factorial is too large!");
+        return factorial(x.intValue());
+    }
+
+    /** Factorial of n, 0 <= n <= MAX_FACTORIAL */
+    static BigInteger factorial(int n) {
+        if (n < TABLE_SIZE) return FACTORIALS[n];
+        return FACTORIALS[TABLE_SIZE - 1].multiply(product(TABLE_SIZE, n));
+    }
+
+    /** Product of every integer from low to high inclusive, by binary splitting */
+    private static BigInteger product(int low, int high) {
+        if (high - low < SERIAL_GRAIN) {
+            BigInteger result = BigInteger.ONE;
+            long product = 1;  // Factors are gathered in a long until it would overflow
+            for (int i = low; i <= high; i++) {
+                if (product > Long.MAX_VALUE / i) {
+                    result = result.multiply(BigInteger.valueOf(product));
+                    product = 1;
+                }
+                product *= i;
+            }
+            return result.multiply(BigInteger.valueOf(product));
+        }
+        int middle = (low + high) >>> 1;
+        return product(low, middle).multiply(product(middle + 1, high));
+    }
+
+    /* ----------------------------------------------- Integer powers ----------------------------------------------- */
+
+    /** Check if y is an integer that fits the exponent range of BigDecimal.pow */
+    static boolean isIntegerExponent(BigDecimal y) {
+        if (y.signum() == 0) return true;
+        if (y.scale() > 0 && y.stripTrailingZeros().scale() > 0) return false;
+        return y.abs().compareTo(BigDecimal.valueOf(999999999)) <= 0;
+    }
+
+    /**
+     * x to the integer power n by squaring. The result is exact when it has at most MAX_EXACT_POWER_DIGITS digits,
+     * otherwise it is rounded to mathContext. Negative powers are a division, throws ArithmeticException for 0^-n and
+     * for results with more than MAX_RESULT_DIGITS digits before the decimal point. Tiny results are only rounded.
+     */
+    static BigDecimal pow(BigDecimal x, int n, MathContext mathContext) {
+        if (x.signum() != 0 && n * log10(x.abs()) > MAX_RESULT_DIGITS)
+            throw new ArithmeticException("Power is too large!");
+        int exponent = Math.abs(n);
+        boolean isExact = (long) x.precision() * exponent <= MAX_EXACT_POWER_DIGITS;
+        BigDecimal result;
+
+        if (isExact) {
+            result = square(x, exponent, MathContext.UNLIMITED);
+        } else {
+            // Guard digits for the rounding error compounding over every multiplication
+            int guard = 32 - Integer.numberOfLeadingZeros(exponent) + 2;
+            result = square(x, exponent, new MathContext(mathContext.getPrecision() + guard, RoundingMode.HALF_EVEN));
+        }
+
+        if (n < 0) return BigDecimal.ONE.divide(result, mathContext);
+        return isExact ? result : result.round(mathContext);
+    }
+
+    /** Decimal logarithm of x > 0, close enough to tell the number of digits of its powers */
+    private static double log10(BigDecimal x) {
+        int magnitude = x.precision() - x.scale();  // x is below 10^magnitude and at least 10^(magnitude - 1)
+        return magnitude + Math.log10(x.movePointLeft(magnitude).doubleValue());
+    }
+
+    /** Right to left binary exponentiation, exponent >= 0 */
+    private static BigDecimal square(BigDecimal x, int exponent, MathContext working) {
+        BigDecimal result = BigDecimal.ONE;
+        BigDecimal square = x;
+
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) result = result.multiply(square, working);
+            exponent >>>= 1;
+            if (exponent > 0) square = square.multiply(square, working);
+        }
+        return result;
+    }
+}
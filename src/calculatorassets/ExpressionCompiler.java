@@ -0,0 +1,249 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Compiles spoken expressions into CompiledExpression trees. Compiled trees are kept in a bounded LRU cache keyed by
+ * the normalized utterance and the grammar it was parsed with, so a repeated formula skips lexing, validation and
+ * parsing altogether. Trees built from a grammar's derivation were never validated and are only found through the same
+ * grammar.
+ */
+
+import java.util.Locale;
+
+public final class ExpressionCompiler {
+    private static final int CACHE_CAPACITY = 256;
+    private static final LruCache<Key, CompiledExpression> cache = new LruCache<>(CACHE_CAPACITY);
+
+    private ExpressionCompiler() {
+    }
+
+    /** Compile an expression, throws RuntimeException if it isn't understood or isn't valid */
+    public static CompiledExpression compile(String saidString) {
+        return compile(saidString, null);
+    }
+
+    /**
+     * Compile an expression, taking its tokens from its derivation if the grammar accepts it, which makes validation
+     * unnecessary. Anything else is lexed and validated. Throws RuntimeException if it isn't understood or isn't valid
+     */
+    public static CompiledExpression compile(String saidString, GrammarParser grammar) {
+        String normalized = normalize(saidString);
+        Key key = new Key(grammar, normalized);
+        CompiledExpression compiled = cache.get(key);
+
+        if (compiled == null) {
+            Token[] accepted = grammar == null ? null : grammar.parse(normalized);
+            compiled = accepted == null ? compile(SpeechLexer.lex(normalized)) : build(accepted, describe(accepted));
+            cache.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /** Compile already lexed tokens, bypasses the cache */
+    public static CompiledExpression compile(Token[] tokens) {
+        String convertedExpression = describe(tokens);
+        if (!isValid(tokens))
+            throw new RuntimeException("'" + convertedExpression + "' is not a valid expression.");
+        return build(tokens, convertedExpression);
+    }
+
+    /** Get the compiled expression cache */
+    public static LruCache<?, CompiledExpression> getCache() {
+        return cache;
+    }
+
+    /** Build the tree of a valid token sequence */
+    private static CompiledExpression build(Token[] tokens, String convertedExpression) {
+        Parser parser = new Parser(tokens);
+        CompiledExpression.Node root = parser.parseAS();
+        return new CompiledExpression(convertedExpression, root, parser.usesAnswer);
+    }
+
+    private static String describe(Token[] tokens) {
+        StringBuilder convertedExpression = new StringBuilder();
+        for (Token token : tokens) {
+            if (convertedExpression.length() > 0) convertedExpression.append(' ');
+            convertedExpression.append(token);
+        }
+        return convertedExpression.toString();
+    }
+
+    /** Lower case, trim and collapse whitespace so that equivalent hypotheses share a cache entry */
+    private static String normalize(String saidString) {
+        StringBuilder normalized = new StringBuilder(saidString.length());
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < saidString.length(); i++) {
+            char c = saidString.charAt(i);
+            if (Character.isWhitespace(c)) pendingSpace = normalized.length() > 0;
+            else {
+                if (pendingSpace) normalized.append(' ');
+                normalized.append(c);
+                pendingSpace = false;
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /** Check if expression is valid */
+    private static boolean isValid(Token[] tokens) {
+        // Kinds follow the old char types: 0 = numbers, 1 = double operand operators, 2 = 1 operand prefix operators,
+        // 3 = 1 operand postfix operators, 4 = left parenthesis, 5 = right parenthesis
+        Token.Kind kind, previousKind;
+        int unclosedCount = 0;
+
+        if (tokens.length == 0) return false;
+
+        // Set first kind
+        kind = tokens[0].getKind();
+        if (kind == Token.Kind.LEFT_PARENTHESIS) unclosedCount++;
+        else if (kind != Token.Kind.OPERAND && kind != Token.Kind.PREFIX)
+            return false;  // Cannot be valid if starts with operators and closing parenthesis
+
+        if (tokens.length == 1 && kind != Token.Kind.OPERAND) return false;  // Returns false if equation is only one left parenthesis/prefix operator
+        else if (tokens.length == 1) return true;  // Returns true if it's just one number
+        else {  // If longer than one carries out parsing
+            for (int i = 1; i < tokens.length; i++) {
+                previousKind = kind;
+                kind = tokens[i].getKind();
+
+                /* Checks for different cases
+                 * 1. Numbers and two operand operators cannot repeat
+                 * 2. Left parentheses can't be preceded by a number or postfix operator (View note)
+                 * 3. Right parentheses can't be preceded by an operator that takes an operand from behind
+                 * 4. Left parentheses can't be followed by an operator that takes an operand from in front
+                 * 5. Right parentheses can't be followed by a number/operator (View note)
+                 *
+                 * Note: Calculator does not currently support implied multiplication (i.e. 2pi or 2(3 + 1))*/
+                if (previousKind == kind && (kind == Token.Kind.OPERAND || kind == Token.Kind.BINARY))
+                    return false;                                                                                // 1
+                else if (kind == Token.Kind.LEFT_PARENTHESIS && (previousKind == Token.Kind.OPERAND ||
+                        previousKind == Token.Kind.POSTFIX || previousKind == Token.Kind.RIGHT_PARENTHESIS))
+                    return false;                                                                                // 2
+                else if (kind == Token.Kind.RIGHT_PARENTHESIS && (previousKind == Token.Kind.BINARY ||
+                        previousKind == Token.Kind.PREFIX)) return false;                                        // 3
+                else if (previousKind == Token.Kind.LEFT_PARENTHESIS && (kind == Token.Kind.BINARY ||
+                        kind == Token.Kind.POSTFIX || kind == Token.Kind.RIGHT_PARENTHESIS)) return false;       // 4
+                else if (previousKind == Token.Kind.RIGHT_PARENTHESIS && (kind == Token.Kind.OPERAND ||
+                        kind == Token.Kind.PREFIX)) return false;                                                // 5
+
+                if (kind == Token.Kind.LEFT_PARENTHESIS) unclosedCount++;
+                else if (kind == Token.Kind.RIGHT_PARENTHESIS) unclosedCount--;
+
+                if (unclosedCount == -1) return false;  // You can't have )( which still has an unclosed count of 0
+            }
+            return unclosedCount == 0 && kind != Token.Kind.BINARY;
+        }
+    }
+
+    /** Cache key, grammars are compared by identity and null stands for the lexer */
+    private static final class Key {
+        private final GrammarParser grammar;
+        private final String expression;
+        private final int hash;
+
+        private Key(GrammarParser grammar, String expression) {
+            this.grammar = grammar;
+            this.expression = expression;
+            this.hash = 31 * expression.hashCode() + System.identityHashCode(grammar);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return grammar == other.grammar && expression.equals(other.expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // Parser builds the tree with the same precedence the old evaluating parser used, based off of code here
+    // (released to public domain): https://stackoverflow.com/questions/3422673/how-to-evaluate-a-math-expression-given-in-string-form
+
+    /** Recursive descent parser over a token array */
+    private static final class Parser {
+        private final Token[] tokens;
+        private int currentIndex = 0;
+        private Token currentToken;
+        private boolean usesAnswer = false;
+
+        private Parser(Token[] tokens) {
+            this.tokens = tokens;
+            this.currentToken = tokens[0];
+        }
+
+        /** Check & increase index  */
+        private boolean strIsEqual(Token.Type type) {
+            if (currentToken != null && currentToken.getType() == type) {
+                advance();
+                return true;
+            }
+            return false;
+        }
+
+        private void advance() {
+            currentToken = (++currentIndex < tokens.length) ? tokens[currentIndex] : null;
+        }
+
+        private CompiledExpression.Node parseAS() {
+            CompiledExpression.Node x = parseMD();
+            while (true) {
+                if (strIsEqual(Token.Type.PLUS)) x = new CompiledExpression.Binary(Token.Type.PLUS, x, parseMD());
+                else if (strIsEqual(Token.Type.MINUS))
+                    x = new CompiledExpression.Binary(Token.Type.MINUS, x, parseMD());
+                else return x;
+            }
+        }
+
+        private CompiledExpression.Node parseMD() {
+            CompiledExpression.Node x = parseGroup();
+            while (true) {
+                if (strIsEqual(Token.Type.MULTIPLY))
+                    x = new CompiledExpression.Binary(Token.Type.MULTIPLY, x, parseGroup());
+                else if (strIsEqual(Token.Type.DIVIDE))
+                    x = new CompiledExpression.Binary(Token.Type.DIVIDE, x, parseGroup());
+                else return x;
+            }
+        }
+
+        private CompiledExpression.Node parseGroup() {
+            CompiledExpression.Node x;
+            Token token = currentToken;
+
+            if (strIsEqual(Token.Type.LEFT_PARENTHESIS)) {
+                x = parseAS();
+                strIsEqual(Token.Type.RIGHT_PARENTHESIS);  // Parses past the closing parenthesis
+            }
+            else if (token.getType() == Token.Type.ANSWER) {
+                advance();
+                x = CompiledExpression.Answer.INSTANCE;
+                usesAnswer = true;
+            }
+            else if (token.getType() == Token.Type.NUMBER) {
+                advance();
+                x = new CompiledExpression.Constant(token.getValue());
+            }
+            else if (token.getType() == Token.Type.SQRT || token.getType() == Token.Type.LOG ||
+                    token.getType() == Token.Type.LN) {  // Applies to the following group
+                advance();
+                x = new CompiledExpression.Function(token.getType(), parseGroup());
+            }
+            else if (token.getKind() == Token.Kind.PREFIX) {  // Trig functions apply to the following expression
+                advance();
+                x = new CompiledExpression.Function(token.getType(), parseAS());
+            }
+            else throw new IllegalStateException("Unexpected token " + token);
+
+            // Other operators
+            if (strIsEqual(Token.Type.FACTORIAL)) x = new CompiledExpression.Factorial(x);
+            if (strIsEqual(Token.Type.POWER)) x = new CompiledExpression.Binary(Token.Type.POWER, x, parseGroup());
+
+            return x;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Stateless evaluator core, one instance can serve any number of threads. Vocabulary tables are built once by
+ * SpeechLexer, compiled trees are immutable and the caches are safe to share, everything that changes per call (the
+ * bound answer and angle mode) is passed in. Per session state such as the previous result lives in SpeechExpression.
+ * Compiling and evaluating are timed into Metrics.LEXING and Metrics.EVALUATION, failures included.
+ */
+
+import metrics.Metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+public final class ExpressionEvaluator {
+    private static final ExpressionEvaluator shared =
+            new ExpressionEvaluator(new ResultCache(1024, 10, TimeUnit.MINUTES));
+
+    private final ResultCache results;
+    private final NumericContext numeric;
+    private final GrammarParser grammar;
+
+    /** Construct an evaluator with the default numeric context, results are not memoized if results is null */
+    public ExpressionEvaluator(ResultCache results) {
+        this(results, NumericContext.DEFAULT);
+    }
+
+    /** Construct an evaluator, results are not memoized if results is null */
+    public ExpressionEvaluator(ResultCache results, NumericContext numeric) {
+        this(results, numeric, null);
+    }
+
+    /**
+     * Construct an evaluator parsing expressions against the recognizer's grammar first, results are not memoized if
+     * results is null and every expression is lexed and validated if grammar is null
+     */
+    public ExpressionEvaluator(ResultCache results, NumericContext numeric, GrammarParser grammar) {
+        this.results = results;
+        this.numeric = numeric;
+        this.grammar = grammar;
+    }
+
+    /** Get the evaluator shared by every SpeechExpression that isn't given one */
+    public static ExpressionEvaluator getShared() {
+        return shared;
+    }
+
+    /** Compile an expression, throws RuntimeException if it isn't understood or isn't valid */
+    public CompiledExpression compile(String saidString) {
+        long start = System.nanoTime();
+        try {
+            return ExpressionCompiler.compile(saidString, grammar);
+        } finally {
+            Metrics.LEXING.recordSince(start);
+        }
+    }
+
+    /** Evaluate a compiled expression with the given value for "answer" and angle mode */
+    public BigDecimal evaluate(CompiledExpression expression, BigDecimal answer, boolean isRad) {
+        long start = System.nanoTime();
+        try {
+            return results == null ? expression.evaluate(answer, isRad, numeric) :
+                    results.evaluate(expression, answer, isRad, numeric);
+        } finally {
+            Metrics.EVALUATION.recordSince(start);
+        }
+    }
+
+    /** Compile and evaluate an expression with the given value for "answer" and angle mode */
+    public BigDecimal evaluate(String saidString, BigDecimal answer, boolean isRad) {
+        return evaluate(compile(saidString), answer, isRad);
+    }
+
+    /** Get numeric context */
+    public NumericContext getNumericContext() {
+        return numeric;
+    }
+
+    /** Get the grammar expressions are parsed against, null if they are only lexed */
+    public GrammarParser getGrammar() {
+        return grammar;
+    }
+
+    /** Get the result cache, null if results are not memoized */
+    public ResultCache getResultCache() {
+        return results;
+    }
+}
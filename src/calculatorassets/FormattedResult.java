@@ -0,0 +1,72 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * One evaluated result with its shown forms. The rounded value, plain string and spoken words are each worked out the
+ * first time they are asked for and kept, so repeating an answer costs nothing. Not thread safe, like SpeechExpression.
+ * Results with more than MAX_PLAIN_DIGITS digits before the decimal point are shown in scientific notation, and
+ * NumberWords reads long ones in scientific notation, so neither form grows with the size of the result.
+ */
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+public final class FormattedResult {
+    static final int MAX_PLAIN_DIGITS = 1000;  // Larger results are shown in scientific notation
+    private static final MathContext SCIENTIFIC = new MathContext(MAX_PLAIN_DIGITS, RoundingMode.HALF_UP);
+
+    private final BigDecimal value;
+    private final int scale;
+    private BigDecimal rounded;
+    private String plain;
+    private String spoken;
+
+    /** Constructor for class, results are shown rounded to scale decimal places without trailing zeros */
+    public FormattedResult(BigDecimal value, int scale) {
+        this.value = value;
+        this.scale = scale;
+    }
+
+    /** Get the unrounded value, as "answer" is bound to */
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    /**
+     * Get the value rounded to scale with trailing decimal zeros and decimal point stripped. Values past
+     * MAX_PLAIN_DIGITS are rounded to that many digits and keep a negative scale instead of being written out in full
+     */
+    public BigDecimal getRounded() {
+        if (rounded == null) {
+            // Integers need no rounding, and rescaling a large one with a negative scale would write out its digits
+            BigDecimal shown = isLarge(value) ? value.round(SCIENTIFIC) :
+                    value.scale() <= 0 ? value : value.setScale(scale, BigDecimal.ROUND_HALF_UP);
+            BigDecimal stripped = shown.stripTrailingZeros();
+            rounded = stripped.scale() < 0 && !isLarge(stripped) ? stripped.setScale(0) : stripped;
+        }
+        return rounded;
+    }
+
+    /** Get the rounded value without an exponent, i.e. "0.0000001" rather than "1E-7", unless past MAX_PLAIN_DIGITS */
+    public String getPlain() {
+        if (plain == null) plain = isLarge(getRounded()) ? getRounded().toString() : getRounded().toPlainString();
+        return plain;
+    }
+
+    /** Get the rounded value in words */
+    public String getSpoken() {
+        if (spoken == null) spoken = NumberWords.toWords(getRounded());
+        return spoken;
+    }
+
+    /** Check if a value has more than MAX_PLAIN_DIGITS digits before the decimal point */
+    private static boolean isLarge(BigDecimal value) {
+        return value.precision() - value.scale() > MAX_PLAIN_DIGITS;
+    }
+
+    @Override
+    public String toString() {
+        return getPlain();
+    }
+}
@@ -0,0 +1,603 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Parses hypotheses against the JSGF expression grammar the recognizer decodes with, instead of lexing them on their
+ * own and validating the token sequence afterwards. A hypothesis the recognizer produced from the grammar is accepted
+ * by construction, its derivation says which words form a number, an operator or a parenthesis so only those spans go
+ * through the lexer tables. The grammar is flattened once into a context free grammar and parsed with an Earley parser
+ * (nullable rules handled as by Aycock and Horspool), since the expression rules are left recursive and ambiguous.
+ *
+ * The grammar has no precedence of its own (every operator applies to a <group>), the tokens of a derivation are
+ * built into a tree with the calculator's precedence by ExpressionCompiler, without validating them again. Anything
+ * the grammar doesn't accept (typed input, or words of another grammar) is rejected so the caller can fall back to
+ * lexing. Immutable once loaded, one parser can serve any number of threads.
+ */
+
+import edu.cmu.sphinx.jsgf.JSGFGrammarParseException;
+import edu.cmu.sphinx.jsgf.JSGFRuleGrammar;
+import edu.cmu.sphinx.jsgf.JSGFRuleGrammarFactory;
+import edu.cmu.sphinx.jsgf.JSGFRuleGrammarManager;
+import edu.cmu.sphinx.jsgf.parser.JSGFParser;
+import edu.cmu.sphinx.jsgf.rule.JSGFRule;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleAlternatives;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleCount;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleName;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleSequence;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleTag;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+public final class GrammarParser {
+    /** Rules of equationSyntax.gram whose words become tokens as a whole: operands and operators */
+    public static final Set<String> EXPRESSION_ATOMS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "term", "leftRightOperator", "rightOperator", "leftOperator")));
+    private static final Token[] NOT_UNDERSTOOD = new Token[0];
+    private static final int MAX_WORDS = 63;  // Atom ends are matched as bits of a long
+
+    private final int start;
+    private final int[] lhs;  // Per production
+    private final int[][] rhs;  // Per production, nonterminals are >= 0 and terminals are ~word
+    private final int[][] productions;  // Per nonterminal
+    private final boolean[] nullable;  // Per nonterminal
+    private final boolean[][] first;  // Per nonterminal and word, if it can start with the word
+    private final int[][][] candidates;  // Per nonterminal and next word (or end), the productions that may match
+    private final boolean[] atom;  // Per nonterminal
+    private final int[] dotted;  // Per production, first dotted production id
+    private final int outerCount;  // Nonterminals outside of atoms (atoms included) come first, only they are parsed
+    private final int outerDottedCount;
+    private final Map<String, Integer> words;
+
+    /** Flatten a rule and the rules it refers to, derivations of the atom rules are lexed as a whole */
+    public GrammarParser(JSGFRuleGrammar grammar, String startRule, Set<String> atomRules) {
+        Builder builder = new Builder(grammar, atomRules);
+        start = builder.rule(startRule);
+        outerCount = builder.atom.size();
+        int outerProductions = builder.lhs.size();
+        builder.flattenAtoms();
+
+        lhs = new int[builder.lhs.size()];
+        rhs = builder.rhs.toArray(new int[0][]);
+        for (int i = 0; i < lhs.length; i++) lhs[i] = builder.lhs.get(i);
+
+        int nonterminals = builder.atom.size();
+        int[] counts = new int[nonterminals];
+        for (int left : lhs) counts[left]++;
+        productions = new int[nonterminals][];
+        for (int i = 0; i < nonterminals; i++) productions[i] = new int[counts[i]];
+        Arrays.fill(counts, 0);
+        for (int p = 0; p < lhs.length; p++) productions[lhs[p]][counts[lhs[p]]++] = p;
+
+        dotted = new int[outerProductions];
+        int dots = 0;
+        for (int p = 0; p < outerProductions; p++) {
+            dotted[p] = dots;
+            dots += rhs[p].length + 1;
+        }
+        outerDottedCount = dots;
+
+        atom = new boolean[nonterminals];
+        for (int i = 0; i < nonterminals; i++) atom[i] = builder.atom.get(i);
+        words = builder.words;
+        nullable = findNullable();
+        first = findFirst();
+        candidates = findCandidates();
+    }
+
+    /** Load the <expression> rule of equationSyntax.gram, throws RuntimeException if the grammar can't be loaded */
+    public static GrammarParser load(File grammarFile) {
+        return load(grammarFile, "expression", EXPRESSION_ATOMS);
+    }
+
+    /** Load a rule of a JSGF file, throws RuntimeException if the grammar can't be loaded */
+    public static GrammarParser load(File grammarFile, String startRule, Set<String> atomRules) {
+        try {
+            JSGFRuleGrammar grammar = JSGFParser.newGrammarFromJSGF(grammarFile.toURI().toURL(),
+                    new JSGFRuleGrammarFactory(new JSGFRuleGrammarManager()));
+            return new GrammarParser(grammar, startRule, atomRules);
+        } catch (IOException | JSGFGrammarParseException ex) {
+            throw new RuntimeException("Error loading grammar " + grammarFile, ex);
+        }
+    }
+
+    /**
+     * Parse a normalized hypothesis (lower case, single spaces) into tokens in the order they were said, null if the
+     * grammar doesn't accept it, one of its numbers isn't valid or it is longer than 63 words
+     */
+    public Token[] parse(String text) {
+        if (text.isEmpty()) return null;
+
+        // Words and where they are in the text
+        int count = 1;
+        for (int i = 0; i < text.length(); i++) if (text.charAt(i) == ' ') count++;
+        if (count > MAX_WORDS) return null;
+        int[] wordIds = new int[count], starts = new int[count], ends = new int[count];
+        for (int i = 0, position = 0; i < count; i++) {
+            int end = text.indexOf(' ', position);
+            if (end == -1) end = text.length();
+            Integer id = words.get(text.substring(position, end));
+            if (id == null) return null;  // Not in the grammar's vocabulary
+
+            wordIds[i] = id;
+            starts[i] = position;
+            ends[i] = end;
+            position = end + 1;
+        }
+
+        Spans completed = recognize(wordIds);
+        if (!completed.contains(start, 0, count)) return null;
+        return new Derivation(text, wordIds, starts, ends, completed).tokens();
+    }
+
+    /* -------------------------------------------------- Recognition ----------------------------------------------- */
+
+    /**
+     * Earley recognizer over the rules between atoms, returns every completed (nonterminal, from, to) span. An atom is
+     * scanned like a word, all of its ends at once, which leaves the parser a handful of rules instead of every rule
+     * of the number grammar predicted at every word
+     */
+    private Spans recognize(int[] input) {
+        int length = input.length;
+        Chart[] charts = new Chart[length + 1];
+        for (int i = 0; i <= length; i++) charts[i] = new Chart(length + 1);
+        Spans completed = new Spans(outerCount, length + 1);
+        AtomMatcher atoms = new AtomMatcher(input);
+
+        for (int production : productions[start]) charts[0].add(production, 0, 0);
+        for (int i = 0; i <= length; i++) {
+            Chart chart = charts[i];
+            for (int item = 0; item < chart.size; item++) {
+                int production = chart.items[item * 3], dot = chart.items[item * 3 + 1];
+                int origin = chart.items[item * 3 + 2];
+
+                if (dot == rhs[production].length) {  // Complete, once per span
+                    int left = lhs[production];
+                    if (!completed.add(left, origin, i)) continue;
+                    Chart from = charts[origin];
+                    int[] waiting = from.waiting[left];
+                    for (int w = 0; w < from.waitingCount[left]; w++) {
+                        int advanced = waiting[w] * 3;
+                        chart.add(from.items[advanced], from.items[advanced + 1] + 1, from.items[advanced + 2]);
+                    }
+                    continue;
+                }
+
+                int symbol = rhs[production][dot];
+                if (symbol < 0) {  // Scan
+                    if (i < length && input[i] == ~symbol) charts[i + 1].add(production, dot + 1, origin);
+                } else if (atom[symbol]) {  // Scan an atom, which is never empty
+                    for (long ends = atoms.ends(symbol, i) >>> (i + 1); ends != 0; ends &= ends - 1) {
+                        int end = i + 1 + Long.numberOfTrailingZeros(ends);
+                        completed.add(symbol, i, end);
+                        charts[end].add(production, dot + 1, origin);
+                    }
+                } else {  // Predict
+                    if (!chart.predicted[symbol]) {
+                        chart.predicted[symbol] = true;
+                        for (int p : candidates(symbol, input, i)) chart.add(p, 0, i);
+                    }
+                    if (nullable[symbol]) chart.add(production, dot + 1, origin);
+                }
+            }
+        }
+        return completed;
+    }
+
+    private boolean[] findNullable() {
+        boolean[] isNullable = new boolean[productions.length];
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < lhs.length; p++) {
+                if (isNullable[lhs[p]]) continue;
+                boolean empty = true;
+                for (int symbol : rhs[p]) empty &= symbol >= 0 && isNullable[symbol];
+                if (empty) isNullable[lhs[p]] = changed = true;
+            }
+        }
+        return isNullable;
+    }
+
+    private boolean[][] findFirst() {
+        boolean[][] isFirst = new boolean[productions.length][words.size()];
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < lhs.length; p++) {
+                for (int symbol : rhs[p]) {
+                    if (symbol < 0) {
+                        changed |= !isFirst[lhs[p]][~symbol];
+                        isFirst[lhs[p]][~symbol] = true;
+                        break;
+                    }
+                    for (int word = 0; word < words.size(); word++) {
+                        if (isFirst[symbol][word] && !isFirst[lhs[p]][word]) isFirst[lhs[p]][word] = changed = true;
+                    }
+                    if (!nullable[symbol]) break;
+                }
+            }
+        }
+        return isFirst;
+    }
+
+    /** Index productions by the words they can start with, nullable productions are candidates for any word */
+    private int[][][] findCandidates() {
+        int end = words.size();
+        int[][][] byWord = new int[productions.length][end + 1][];
+
+        for (int nonterminal = 0; nonterminal < productions.length; nonterminal++) {
+            for (int word = 0; word <= end; word++) {
+                int[] matching = new int[productions[nonterminal].length];
+                int count = 0;
+                for (int production : productions[nonterminal]) {
+                    if (canStart(rhs[production], word)) matching[count++] = production;
+                }
+                byWord[nonterminal][word] = Arrays.copyOf(matching, count);
+            }
+        }
+        return byWord;
+    }
+
+    /** If a sequence of symbols can start with a word, or the end if word is the number of words */
+    private boolean canStart(int[] symbols, int word) {
+        for (int symbol : symbols) {
+            if (symbol < 0) return ~symbol == word;
+            if (word < words.size() && first[symbol][word]) return true;
+            if (!nullable[symbol]) return false;
+        }
+        return true;
+    }
+
+    /** Productions of a nonterminal that may match at a position */
+    private int[] candidates(int nonterminal, int[] input, int from) {
+        return candidates[nonterminal][from < input.length ? input[from] : words.size()];
+    }
+
+    /** Items of one Earley set, (production, dot, origin) triples indexed by the nonterminal they wait for */
+    private final class Chart {
+        private final long[] seen;  // Per dotted production and origin
+        private final int positions;
+        private final boolean[] predicted = new boolean[outerCount];
+        private final int[][] waiting = new int[outerCount][];
+        private final int[] waitingCount = new int[outerCount];
+        private int[] items = new int[96];
+        private int size = 0;
+
+        private Chart(int positions) {
+            this.positions = positions;
+            seen = new long[(outerDottedCount * positions + 63) >> 6];
+        }
+
+        private void add(int production, int dot, int origin) {
+            int bit = (dotted[production] + dot) * positions + origin;
+            if ((seen[bit >> 6] & 1L << bit) != 0) return;
+            seen[bit >> 6] |= 1L << bit;
+
+            if (size * 3 == items.length) items = Arrays.copyOf(items, items.length * 2);
+            items[size * 3] = production;
+            items[size * 3 + 1] = dot;
+            items[size * 3 + 2] = origin;
+
+            if (dot < rhs[production].length && rhs[production][dot] >= 0) {
+                int next = rhs[production][dot];
+                if (waiting[next] == null) waiting[next] = new int[4];
+                else if (waitingCount[next] == waiting[next].length)
+                    waiting[next] = Arrays.copyOf(waiting[next], waitingCount[next] * 2);
+                waiting[next][waitingCount[next]++] = size;
+            }
+            size++;
+        }
+    }
+
+    /**
+     * Matches the rules inside atoms directly, as sets of end positions (bit i set if the words before word i can be
+     * the end) memoized per rule and start. Recursion through the same start (which atom rules don't have) matches
+     * nothing
+     */
+    private final class AtomMatcher {
+        private final int[] input;
+        private final long[] ends;
+        private final byte[] state;  // Per nonterminal and start: 0 not matched yet, 1 being matched, 2 matched
+
+        private AtomMatcher(int[] input) {
+            this.input = input;
+            ends = new long[productions.length * (input.length + 1)];
+            state = new byte[ends.length];
+        }
+
+        private long ends(int nonterminal, int from) {
+            int index = nonterminal * (input.length + 1) + from;
+            if (state[index] == 0) {
+                state[index] = 1;
+                long matched = 0;
+                for (int production : candidates(nonterminal, input, from))
+                    matched |= ends(rhs[production], 1L << from);
+                ends[index] = matched;
+                state[index] = 2;
+            }
+            return ends[index];
+        }
+
+        /** Ends of a sequence of symbols following any of the given starts */
+        private long ends(int[] symbols, long starts) {
+            for (int symbol : symbols) {
+                long next = 0;
+                for (long remaining = starts; remaining != 0; remaining &= remaining - 1) {
+                    int from = Long.numberOfTrailingZeros(remaining);
+                    if (symbol >= 0) next |= ends(symbol, from);
+                    else if (from < input.length && input[from] == ~symbol) next |= 1L << (from + 1);
+                }
+                if (next == 0) return 0;
+                starts = next;
+            }
+            return starts;
+        }
+    }
+
+    /** Set of (nonterminal, from, to) spans */
+    private static final class Spans {
+        private final long[] bits;
+        private final int positions;
+
+        private Spans(int nonterminals, int positions) {
+            this.positions = positions;
+            bits = new long[(nonterminals * positions * positions + 63) >> 6];
+        }
+
+        private boolean contains(int nonterminal, int from, int to) {
+            int bit = (nonterminal * positions + from) * positions + to;
+            return (bits[bit >> 6] & 1L << bit) != 0;
+        }
+
+        /** Returns false if it was already in the set */
+        private boolean add(int nonterminal, int from, int to) {
+            int bit = (nonterminal * positions + from) * positions + to;
+            if ((bits[bit >> 6] & 1L << bit) != 0) return false;
+            bits[bit >> 6] |= 1L << bit;
+            return true;
+        }
+
+    }
+
+    /* -------------------------------------------------- Derivation ------------------------------------------------ */
+
+    /**
+     * Finds one derivation top down through the completed spans: which spans can really be derived is checked first
+     * (memoized per span, an atom whose words aren't a valid number, i.e. a lone "negative", can't) and the first
+     * derivable choice is then followed to emit tokens. Words outside of atoms (parentheses) are lexed in runs
+     */
+    private final class Derivation {
+        private static final byte UNKNOWN = 0, CHECKING = 1, DERIVABLE = 2, NOT_DERIVABLE = 3;
+
+        private final String text;
+        private final int[] input;
+        private final int[] starts;
+        private final int[] ends;
+        private final int positions;
+        private final Spans completed;
+        private final byte[] derivable;  // Per span, being checked counts as not derivable, rules can't loop on it
+        private final Token[][] lexed;  // Per word span, atoms of different rules over the same words lex the same
+        private final List<Token> tokens = new ArrayList<>();
+        private int runStart = -1;
+        private int runEnd;
+
+        private Derivation(String text, int[] input, int[] starts, int[] ends, Spans completed) {
+            this.text = text;
+            this.input = input;
+            this.starts = starts;
+            this.ends = ends;
+            this.completed = completed;
+            positions = input.length + 1;
+            derivable = new byte[outerCount * positions * positions];
+            lexed = new Token[positions * positions][];
+        }
+
+        private Token[] tokens() {
+            if (!isDerivable(start, 0, input.length)) return null;
+            return emit(start, 0, input.length) && flushRun() ? tokens.toArray(new Token[0]) : null;
+        }
+
+        private boolean isDerivable(int nonterminal, int from, int to) {
+            if (!completed.contains(nonterminal, from, to)) return false;
+
+            int index = (nonterminal * positions + from) * positions + to;
+            if (derivable[index] == UNKNOWN) {
+                derivable[index] = CHECKING;
+                boolean isDerivable = false;
+                if (atom[nonterminal]) {
+                    Token[] atomTokens = from == to ? null : lex(from, to);
+                    isDerivable = atomTokens != null && atomTokens.length > 0;
+                } else {
+                    for (int production : productions[nonterminal])
+                        if (isDerivable(rhs[production], 0, from, to)) {
+                            isDerivable = true;
+                            break;
+                        }
+                }
+                derivable[index] = isDerivable ? DERIVABLE : NOT_DERIVABLE;
+            }
+            return derivable[index] == DERIVABLE;
+        }
+
+        private boolean isDerivable(int[] symbols, int index, int from, int to) {
+            if (index == symbols.length) return from == to;
+
+            int symbol = symbols[index];
+            if (symbol < 0) return from < to && input[from] == ~symbol && isDerivable(symbols, index + 1, from + 1, to);
+            for (int end = from; end <= to; end++)
+                if (isDerivable(symbol, from, end) && isDerivable(symbols, index + 1, end, to)) return true;
+            return false;
+        }
+
+        /** Emit the tokens of a derivable span, false if a run of words outside atoms isn't understood */
+        private boolean emit(int nonterminal, int from, int to) {
+            if (atom[nonterminal]) {
+                if (!flushRun()) return false;
+                tokens.addAll(Arrays.asList(lex(from, to)));
+                return true;
+            }
+
+            for (int production : productions[nonterminal]) {
+                int[] symbols = rhs[production];
+                if (!isDerivable(symbols, 0, from, to)) continue;
+
+                for (int index = 0; index < symbols.length; index++) {
+                    int symbol = symbols[index];
+                    if (symbol < 0) {
+                        if (runStart == -1) runStart = from;
+                        runEnd = ++from;
+                        continue;
+                    }
+
+                    int end = from;
+                    while (!(isDerivable(symbol, from, end) && isDerivable(symbols, index + 1, end, to))) end++;
+                    if (!emit(symbol, from, end)) return false;
+                    from = end;
+                }
+                return true;
+            }
+            throw new IllegalStateException("Span is not derivable");
+        }
+
+        private boolean flushRun() {
+            if (runStart == -1) return true;
+
+            Token[] run = lex(runStart, runEnd);
+            runStart = -1;
+            if (run == null) return false;
+            tokens.addAll(Arrays.asList(run));
+            return true;
+        }
+
+        /** Tokens of the words from, to, null if they aren't understood */
+        private Token[] lex(int from, int to) {
+            int index = from * positions + to;
+            if (lexed[index] == null) {
+                try {
+                    lexed[index] = SpeechLexer.lex(text.substring(starts[from], ends[to - 1]));
+                } catch (RuntimeException ex) {
+                    lexed[index] = NOT_UNDERSTOOD;
+                }
+            }
+            return lexed[index] == NOT_UNDERSTOOD ? null : lexed[index];
+        }
+    }
+
+    /* ---------------------------------------------------- Flattening ---------------------------------------------- */
+
+    /** Turns JSGF rules into productions, one nonterminal per named rule and per group, option or repeat */
+    private static final class Builder {
+        private final JSGFRuleGrammar grammar;
+        private final Set<String> atomRules;
+        private final Map<String, Integer> rules = new HashMap<>();
+        private final Map<String, Integer> words = new HashMap<>();
+        private final List<Integer> lhs = new ArrayList<>();
+        private final List<int[]> rhs = new ArrayList<>();
+        private final List<Boolean> atom = new ArrayList<>();
+        private final List<Integer> atomNonterminals = new ArrayList<>();  // Atoms not flattened yet
+        private final List<JSGFRule> atomBodies = new ArrayList<>();
+
+        private Builder(JSGFRuleGrammar grammar, Set<String> atomRules) {
+            this.grammar = grammar;
+            this.atomRules = atomRules;
+        }
+
+        /** Nonterminal of a named rule */
+        private int rule(String name) {
+            Integer nonterminal = rules.get(name);
+            if (nonterminal != null) return nonterminal;
+
+            JSGFRule rule = grammar.getRule(name);
+            if (rule == null) throw new RuntimeException("Rule <" + name + "> is not defined");
+            int created = nonterminal(atomRules.contains(name));
+            rules.put(name, created);  // Before its body, which may refer back to it
+            if (atomRules.contains(name)) {
+                atomNonterminals.add(created);
+                atomBodies.add(rule);
+            } else {
+                alternatives(created, rule);
+            }
+            return created;
+        }
+
+        /** Flatten the bodies of the atoms found so far, after the rules outside of them */
+        private void flattenAtoms() {
+            for (int i = 0; i < atomNonterminals.size(); i++) alternatives(atomNonterminals.get(i), atomBodies.get(i));
+        }
+
+        private int nonterminal(boolean isAtom) {
+            atom.add(isAtom);
+            return atom.size() - 1;
+        }
+
+        private void production(int left, List<Integer> symbols) {
+            int[] right = new int[symbols.size()];
+            for (int i = 0; i < right.length; i++) right[i] = symbols.get(i);
+            lhs.add(left);
+            rhs.add(right);
+        }
+
+        /** Productions of a nonterminal standing for rule */
+        private void alternatives(int left, JSGFRule rule) {
+            if (rule instanceof JSGFRuleAlternatives) {
+                for (JSGFRule alternative : ((JSGFRuleAlternatives) rule).getRules()) alternatives(left, alternative);
+            } else {
+                List<Integer> symbols = new ArrayList<>();
+                sequence(rule, symbols);
+                production(left, symbols);
+            }
+        }
+
+        /** Append the symbols rule stands for */
+        private void sequence(JSGFRule rule, List<Integer> symbols) {
+            if (rule instanceof JSGFRuleSequence) {
+                for (JSGFRule item : ((JSGFRuleSequence) rule).getRules()) sequence(item, symbols);
+            } else if (rule instanceof JSGFRuleToken) {
+                for (String word : ((JSGFRuleToken) rule).getText().toLowerCase(Locale.ROOT).trim().split(" +")) {
+                    Integer id = words.get(word);
+                    if (id == null) words.put(word, id = words.size());
+                    symbols.add(~id);
+                }
+            } else if (rule instanceof JSGFRuleName) {
+                symbols.add(rule(((JSGFRuleName) rule).getSimpleRuleName()));
+            } else if (rule instanceof JSGFRuleTag) {
+                sequence(((JSGFRuleTag) rule).getRule(), symbols);
+            } else if (rule instanceof JSGFRuleAlternatives) {
+                int group = nonterminal(false);
+                alternatives(group, rule);
+                symbols.add(group);
+            } else if (rule instanceof JSGFRuleCount) {
+                JSGFRuleCount count = (JSGFRuleCount) rule;
+                int repeat = nonterminal(false);
+                List<Integer> once = new ArrayList<>();
+                sequence(count.getRule(), once);
+
+                if (count.getCount() != JSGFRuleCount.ONCE_OR_MORE)
+                    production(repeat, Collections.<Integer>emptyList());
+                if (count.getCount() == JSGFRuleCount.OPTIONAL) production(repeat, once);
+                else {  // <repeat> = once [<repeat>]
+                    List<Integer> more = new ArrayList<>(once);
+                    more.add(repeat);
+                    production(repeat, more);
+                    if (count.getCount() == JSGFRuleCount.ONCE_OR_MORE) production(repeat, once);
+                }
+                symbols.add(repeat);
+            } else {
+                throw new RuntimeException("Unsupported rule " + rule);
+            }
+        }
+    }
+}
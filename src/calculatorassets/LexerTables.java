@@ -0,0 +1,90 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Generated by GrammarCompiler from resources/grammarFiles/vocabulary.txt, do not edit.
+ *
+ * Vocabulary of SpeechLexer and NumberWords, equationSyntax.gram is generated from the same definition.
+ */
+
+import java.math.BigDecimal;
+
+final class LexerTables {
+    static final int MAX_DECIMAL_DIGITS = 12;
+
+    /** Number words, their SpeechLexer number class and value */
+    static final String[] NUMBER_WORDS = {
+            "zero", "oh", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten", "eleven",
+            "twelve", "thirteen", "fourteen", "fifteen", "sixteen", "seventeen", "eighteen", "nineteen", "twenty",
+            "thirty", "forty", "fifty", "sixty", "seventy", "eighty", "ninety", "hundred", "thousand", "million",
+            "billion", "point", "negative"
+    };
+    static final int[] NUMBER_CLASSES = {
+            SpeechLexer.ZERO, SpeechLexer.ZERO, SpeechLexer.UNIT, SpeechLexer.UNIT, SpeechLexer.UNIT, SpeechLexer.UNIT,
+            SpeechLexer.UNIT, SpeechLexer.UNIT, SpeechLexer.UNIT, SpeechLexer.UNIT, SpeechLexer.UNIT, SpeechLexer.TEEN,
+            SpeechLexer.TEEN, SpeechLexer.TEEN, SpeechLexer.TEEN, SpeechLexer.TEEN, SpeechLexer.TEEN, SpeechLexer.TEEN,
+            SpeechLexer.TEEN, SpeechLexer.TEEN, SpeechLexer.TEEN, SpeechLexer.TENS, SpeechLexer.TENS, SpeechLexer.TENS,
+            SpeechLexer.TENS, SpeechLexer.TENS, SpeechLexer.TENS, SpeechLexer.TENS, SpeechLexer.TENS,
+            SpeechLexer.HUNDRED, SpeechLexer.SCALE, SpeechLexer.SCALE, SpeechLexer.SCALE, SpeechLexer.POINT,
+            SpeechLexer.NEGATIVE
+    };
+    static final long[] NUMBER_VALUES = {
+            0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 30, 40, 50, 60, 70, 80, 90,
+            100, 1000, 1000000, 1000000000, 0, 0
+    };
+
+    /** Phrases, bracketed words are optional, and the tokens each one lexes to */
+    static final String[] PHRASES = {
+            "[the] answer",
+            "pi",
+            "e",
+            "plus",
+            "minus",
+            "over",
+            "divided by",
+            "times",
+            "multiplied by",
+            "to the power of",
+            "[the] [square] root [of]",
+            "[the] sign of",
+            "[the] co sign of",
+            "[the] tangent of",
+            "[the] co see can't of",
+            "[the] see can't of",
+            "[the] co tangent of",
+            "[the] log of",
+            "[the] natural log of",
+            "fact or eel",
+            "percent",
+            "left parentheses",
+            "right parentheses"
+    };
+    static final Token[][] PHRASE_TOKENS = {
+            {new Token(Token.Type.ANSWER)},
+            {new Token(Token.Type.NUMBER, new BigDecimal("3.141592653589793"))},
+            {new Token(Token.Type.NUMBER, new BigDecimal("2.718281828459045"))},
+            {new Token(Token.Type.PLUS)},
+            {new Token(Token.Type.MINUS)},
+            {new Token(Token.Type.DIVIDE)},
+            {new Token(Token.Type.DIVIDE)},
+            {new Token(Token.Type.MULTIPLY)},
+            {new Token(Token.Type.MULTIPLY)},
+            {new Token(Token.Type.POWER)},
+            {new Token(Token.Type.SQRT)},
+            {new Token(Token.Type.SIN)},
+            {new Token(Token.Type.COS)},
+            {new Token(Token.Type.TAN)},
+            {new Token(Token.Type.CSC)},
+            {new Token(Token.Type.SEC)},
+            {new Token(Token.Type.COT)},
+            {new Token(Token.Type.LOG)},
+            {new Token(Token.Type.LN)},
+            {new Token(Token.Type.FACTORIAL)},
+            {new Token(Token.Type.MULTIPLY), new Token(Token.Type.NUMBER, new BigDecimal("0.01"))},
+            {new Token(Token.Type.LEFT_PARENTHESIS)},
+            {new Token(Token.Type.RIGHT_PARENTHESIS)}
+    };
+
+    private LexerTables() {
+    }
+}
@@ -0,0 +1,145 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Small bounded least recently used cache with optional expiry, safe to share between threads. Keys are spread over
+ * independently locked segments so that concurrent lookups rarely wait on each other, recency is tracked per segment.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LruCache<K, V> {
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    private final int capacity;
+    private final long expireAfterNanos;
+    private final Segment<K, V>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** Construct a cache holding at most capacity entries which never expire */
+    public LruCache(int capacity) {
+        this(capacity, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /** Construct a cache holding at most capacity entries, each expiring after the given time (0 for never) */
+    public LruCache(int capacity, long expireAfter, TimeUnit unit) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        if (expireAfter < 0) throw new IllegalArgumentException("Expiry can't be negative");
+        this.capacity = capacity;
+        this.expireAfterNanos = unit.toNanos(expireAfter);
+
+        int segmentCount = 1;  // Power of two so a segment can be picked with a mask
+        while (segmentCount < MAX_SEGMENTS && capacity / (segmentCount * 2) >= MIN_SEGMENT_CAPACITY) segmentCount *= 2;
+
+        @SuppressWarnings("unchecked")  // Arrays of a generic type can't be created, every element is a Segment<K, V>
+        Segment<K, V>[] segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0));
+        }
+        this.segments = segments;
+    }
+
+    /** Get value, null if not cached or expired */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        CachedValue<V> cached;
+
+        synchronized (segment) {
+            cached = segment.get(key);
+            if (cached != null && expireAfterNanos > 0 && System.nanoTime() - cached.created > expireAfterNanos) {
+                segment.remove(key);
+                cached = null;
+            }
+        }
+
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.value;
+    }
+
+    /** Put value, evicting the least recently used entry of its segment when full */
+    public void put(K key, V value) {
+        CachedValue<V> cached = new CachedValue<>(value, expireAfterNanos > 0 ? System.nanoTime() : 0);
+        Segment<K, V> segment = segmentFor(key);
+
+        synchronized (segment) {
+            segment.put(key, cached);
+        }
+    }
+
+    /** Remove every entry */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /** Get number of entries, expired entries are counted until they are looked up */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /** Get capacity */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Get number of lookups that found a value */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** Get number of lookups that found nothing */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    /** Access ordered map of one segment, guarded by its own monitor */
+    private static final class Segment<K, V> extends LinkedHashMap<K, CachedValue<V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /** Cached value along with its creation time */
+    private static final class CachedValue<V> {
+        private final V value;
+        private final long created;
+
+        private CachedValue(V value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+}
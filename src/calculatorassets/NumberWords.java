@@ -0,0 +1,164 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Spells numbers out in the same words SpeechLexer reads, i.e. -2222.75 is "negative two thousand two hundred twenty
+ * two point seven five". Decimal digits are read one at a time. Integer parts past the largest scale word are read
+ * digit by digit as well, so factorials and large powers don't need made up scale names. Numbers with more than
+ * MAX_SPELLED_DIGITS digits are read in scientific notation instead, "one point five times ten to the power of two
+ * hundred", which reads back as the same value. The words are the first of each value in LexerTables.
+ */
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class NumberWords {
+    static final String[] UNITS = words(SpeechLexer.UNIT, 0, 10);  // Zero included
+    static final String[] TEENS = words(SpeechLexer.TEEN, 10, 10);
+    static final String[] TENS = words(SpeechLexer.TENS, 0, 10);  // From twenty
+    static final String[] SCALES = scales();  // From thousand
+    private static final String HUNDRED = words(SpeechLexer.HUNDRED, 100, 1)[0];
+    private static final String POINT = words(SpeechLexer.POINT, 0, 1)[0];
+    private static final String NEGATIVE = words(SpeechLexer.NEGATIVE, 0, 1)[0];
+    private static final String TIMES_TEN_TO_THE_POWER_OF = "times " + TEENS[0] + " to the power of";
+
+    static final int MAX_SPELLED_DIGITS = 100;  // Longer numbers are read in scientific notation
+    private static final MathContext SCIENTIFIC = new MathContext(12, RoundingMode.HALF_UP);  // Digits read then
+
+    private static final long MAX_GROUPED = pow1000(SCALES.length);  // Past the largest scale word
+
+    /** Every word toWords can produce */
+    public static final List<String> VOCABULARY = Collections.unmodifiableList(buildVocabulary());
+
+    private NumberWords() {
+    }
+
+    /** Spell a number out */
+    public static String toWords(BigDecimal value) {
+        if (Math.max(0, value.precision() - value.scale()) + Math.max(0, value.scale()) > MAX_SPELLED_DIGITS)
+            return toScientificWords(value);
+
+        StringBuilder words = new StringBuilder(64);
+        if (value.signum() < 0) words.append(NEGATIVE).append(' ');
+        value = value.abs();
+
+        BigInteger integerPart = value.toBigInteger();
+        if (integerPart.bitLength() < 63 && integerPart.longValue() < MAX_GROUPED)
+            appendInteger(words, integerPart.longValue());
+        else appendDigits(words, integerPart.toString());
+
+        if (value.scale() > 0) {
+            String plain = value.toPlainString();
+            int point = plain.indexOf('.');
+            if (point >= 0 && point + 1 < plain.length()) {
+                words.append(' ').append(POINT).append(' ');
+                appendDigits(words, plain.substring(point + 1));
+            }
+        }
+        return words.toString();
+    }
+
+    /** Spell a number out rounded to SCIENTIFIC's digits times a power of ten, value must not be 0 */
+    private static String toScientificWords(BigDecimal value) {
+        BigDecimal rounded = value.round(SCIENTIFIC);
+        int exponent = rounded.precision() - rounded.scale() - 1;
+        BigDecimal mantissa = rounded.movePointLeft(exponent).stripTrailingZeros();
+        return toWords(mantissa) + ' ' + TIMES_TEN_TO_THE_POWER_OF + ' ' + toWords(BigDecimal.valueOf(exponent));
+    }
+
+    /** Append an integer below a thousand billion in scale groups */
+    private static void appendInteger(StringBuilder words, long value) {
+        if (value == 0) {
+            words.append(UNITS[0]);
+            return;
+        }
+
+        boolean first = true;
+        for (int scale = SCALES.length - 1; scale >= 0; scale--) {
+            long divisor = pow1000(scale);
+            int group = (int) (value / divisor % 1000);
+            if (group == 0) continue;
+
+            if (!first) words.append(' ');
+            appendGroup(words, group);
+            if (scale > 0) words.append(' ').append(SCALES[scale]);
+            first = false;
+        }
+    }
+
+    /** Append 1 to 999 */
+    private static void appendGroup(StringBuilder words, int group) {
+        int hundreds = group / 100, rest = group % 100;
+
+        if (hundreds > 0) {
+            words.append(UNITS[hundreds]).append(' ').append(HUNDRED);
+            if (rest > 0) words.append(' ');
+        }
+        if (rest >= 20) {
+            words.append(TENS[rest / 10]);
+            if (rest % 10 > 0) words.append(' ').append(UNITS[rest % 10]);
+        }
+        else if (rest >= 10) words.append(TEENS[rest - 10]);
+        else if (rest > 0) words.append(UNITS[rest]);
+    }
+
+    /** Append digits one word at a time */
+    private static void appendDigits(StringBuilder words, String digits) {
+        for (int i = 0; i < digits.length(); i++) {
+            if (i > 0) words.append(' ');
+            words.append(UNITS[digits.charAt(i) - '0']);
+        }
+    }
+
+    private static List<String> buildVocabulary() {
+        List<String> words = new ArrayList<>();
+        Collections.addAll(words, UNITS);
+        Collections.addAll(words, TEENS);
+        for (String word : TENS) if (word != null) words.add(word);
+        words.add(HUNDRED);
+        for (String word : SCALES) if (word != null) words.add(word);
+        words.add(POINT);
+        words.add(NEGATIVE);
+        words.add(TIMES_TEN_TO_THE_POWER_OF);
+        return words;
+    }
+
+    /** First word of each value of a number class from offset on, zero going with the units and the tens by tens */
+    private static String[] words(int numberClass, long offset, int count) {
+        String[] words = new String[count];
+        for (int i = 0; i < LexerTables.NUMBER_WORDS.length; i++) {
+            int wordClass = LexerTables.NUMBER_CLASSES[i];
+            if (wordClass != numberClass && !(numberClass == SpeechLexer.UNIT && wordClass == SpeechLexer.ZERO))
+                continue;
+
+            long value = LexerTables.NUMBER_VALUES[i];
+            int index = (int) (numberClass == SpeechLexer.TENS ? value / 10 : value - offset);
+            if (words[index] == null) words[index] = LexerTables.NUMBER_WORDS[i];
+        }
+        return words;
+    }
+
+    /** Scale words by power of a thousand */
+    private static String[] scales() {
+        List<String> scales = new ArrayList<>(Collections.singletonList((String) null));
+        for (int i = 0; i < LexerTables.NUMBER_WORDS.length; i++) {
+            if (LexerTables.NUMBER_CLASSES[i] != SpeechLexer.SCALE) continue;
+            int power = 0;
+            for (long value = LexerTables.NUMBER_VALUES[i]; value > 1; value /= 1000) power++;
+            while (scales.size() <= power) scales.add(null);
+            if (scales.get(power) == null) scales.set(power, LexerTables.NUMBER_WORDS[i]);
+        }
+        return scales.toArray(new String[0]);
+    }
+
+    private static long pow1000(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) result *= 1000;
+        return result;
+    }
+}
@@ -0,0 +1,49 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Numeric settings of an evaluator, replaces the fixed "Float 12". Results are shown rounded to scale decimal places,
+ * the exact BigDecimal path works to mathContext precision and the DOUBLE backend tries a primitive double evaluation
+ * first, falling back to the exact path whenever its tracked error could change the shown result.
+ */
+
+import java.math.MathContext;
+
+public final class NumericContext {
+    /** Holds the available numeric backends */
+    public enum Backend {
+        DOUBLE,     // Primitive double with tracked error bounds, falls back to BIG_DECIMAL when too imprecise
+        BIG_DECIMAL // BigDecimal to mathContext precision
+    }
+
+    public static final NumericContext DEFAULT = new NumericContext(Backend.DOUBLE, MathContext.DECIMAL128, 12);
+
+    private final Backend backend;
+    private final MathContext mathContext;
+    private final int scale;
+
+    /** Constructor for class, mathContext must have a bounded precision */
+    public NumericContext(Backend backend, MathContext mathContext, int scale) {
+        if (mathContext.getPrecision() == 0)
+            throw new IllegalArgumentException("Division needs a bounded precision, unlimited isn't supported");
+        if (scale < 0) throw new IllegalArgumentException("Scale can't be negative");
+        this.backend = backend;
+        this.mathContext = mathContext;
+        this.scale = scale;
+    }
+
+    /** Get backend */
+    public Backend getBackend() {
+        return backend;
+    }
+
+    /** Get precision used by the BigDecimal path */
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+
+    /** Get number of decimal places results are rounded to */
+    public int getScale() {
+        return scale;
+    }
+}
@@ -0,0 +1,89 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Memoizes evaluation results keyed by the canonical expression, angle mode and the value bound to "answer". The
+ * bound answer is only part of the key when the expression actually refers to it.
+ */
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+public final class ResultCache {
+    private final LruCache<Key, BigDecimal> cache;
+
+    /** Construct a cache holding at most capacity results, each expiring after the given time (0 for never) */
+    public ResultCache(int capacity, long expireAfter, TimeUnit unit) {
+        cache = new LruCache<>(capacity, expireAfter, unit);
+    }
+
+    /** Get the cached result or evaluate and cache it, failed evaluations are not cached */
+    public BigDecimal evaluate(CompiledExpression expression, BigDecimal answer, boolean isRad) {
+        return evaluate(expression, answer, isRad, NumericContext.DEFAULT);
+    }
+
+    /**
+     * Get the cached result or evaluate it with the given numeric context and cache it. A cache should only be used
+     * with one numeric context, the context is not part of the key.
+     */
+    public BigDecimal evaluate(CompiledExpression expression, BigDecimal answer, boolean isRad,
+                               NumericContext numeric) {
+        Key key = new Key(expression.getConvertedExpression(), isRad, expression.usesAnswer() ? answer : null);
+        BigDecimal result = cache.get(key);
+
+        if (result == null) {
+            result = expression.evaluate(answer, isRad, numeric);
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /** Remove every result */
+    public void clear() {
+        cache.clear();
+    }
+
+    /** Get number of results currently held */
+    public int size() {
+        return cache.size();
+    }
+
+    /** Get number of lookups answered from the cache */
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    /** Get number of lookups that had to be evaluated */
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    /** Cache key */
+    private static final class Key {
+        private final String expression;
+        private final boolean isRad;
+        private final BigDecimal answer;
+        private final int hash;
+
+        private Key(String expression, boolean isRad, BigDecimal answer) {
+            this.expression = expression;
+            this.isRad = isRad;
+            this.answer = answer;
+            this.hash = 31 * (31 * expression.hashCode() + (isRad ? 1 : 0)) + (answer == null ? 0 : answer.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return isRad == other.isRad && expression.equals(other.expression) &&
+                    (answer == null ? other.answer == null : answer.equals(other.answer));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Table driven lexer turning a hypothesis into typed tokens in a single left to right pass.
+ *
+ * Every phrase in the vocabulary table is stored in a character trie which is built once. At each word the trie is
+ * walked as far as the input allows and the longest phrase ending on a word boundary wins, so "co see can't of" is
+ * never read as "co" followed by "see can't of" and the result does not depend on table order. Runs of number words
+ * are validated and converted with the same structure as equationSyntax.gram's <number>. The vocabulary comes from
+ * LexerTables, generated by GrammarCompiler along with the grammar.
+ *
+ * Typed input that isn't in the vocabulary is still understood word by word as it was before the lexer, for the batch
+ * and server front ends: numerals ("2", "-4.25") and the symbols of Token.Type ("+", "sqrt", "(").
+ */
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class SpeechLexer {
+    // Number word classes of LexerTables, NOT_NUMBER for everything else
+    private static final int NOT_NUMBER = 0;
+    static final int ZERO = 1;
+    static final int UNIT = 2;
+    static final int TEEN = 3;
+    static final int TENS = 4;
+    static final int HUNDRED = 5;
+    static final int SCALE = 6;
+    static final int POINT = 7;
+    static final int NEGATIVE = 8;
+
+    private static final int ALPHABET_SIZE = 28;  // a-z, space and apostrophe
+
+    private static final Node ROOT = new Node();
+    private static final Map<String, Token> SYMBOLS = new HashMap<>();
+
+    static {
+        buildNumberTable();
+        buildWordTable();
+        buildSymbolTable();
+    }
+
+    private SpeechLexer() {
+    }
+
+    /* ------------------------------------------------ Vocabulary -------------------------------------------------- */
+
+    /** Add number words to the table */
+    private static void buildNumberTable() {
+        for (int i = 0; i < LexerTables.NUMBER_WORDS.length; i++) {
+            insert(LexerTables.NUMBER_WORDS[i], new Lexeme(LexerTables.NUMBER_CLASSES[i], LexerTables.NUMBER_VALUES[i],
+                    null));
+        }
+    }
+
+    /** Add function/operator phrases to the table, bracketed words are optional */
+    private static void buildWordTable() {
+        for (int i = 0; i < LexerTables.PHRASES.length; i++) {
+            expand(LexerTables.PHRASES[i].split(" "), 0, "", new Lexeme(NOT_NUMBER, 0, LexerTables.PHRASE_TOKENS[i]));
+        }
+    }
+
+    /** Add the symbols of every operator, for typed expressions */
+    private static void buildSymbolTable() {
+        for (Token.Type type : Token.Type.values()) {
+            if (type != Token.Type.NUMBER) SYMBOLS.put(type.getSymbol(), new Token(type));
+        }
+    }
+
+    /** Insert every variant of a pattern, with and without each optional word */
+    private static void expand(String[] words, int index, String prefix, Lexeme lexeme) {
+        if (index == words.length) {
+            insert(prefix, lexeme);
+            return;
+        }
+
+        String word = words[index];
+        String separator = prefix.isEmpty() ? "" : " ";
+        if (word.startsWith("[")) {
+            expand(words, index + 1, prefix, lexeme);
+            word = word.substring(1, word.length() - 1);
+        }
+        expand(words, index + 1, prefix + separator + word, lexeme);
+    }
+
+    private static void insert(String phrase, Lexeme lexeme) {
+        Node node = ROOT;
+        for (int i = 0; i < phrase.length(); i++) {
+            int index = indexOf(phrase.charAt(i));
+            if (node.children[index] == null) node.children[index] = new Node();
+            node = node.children[index];
+        }
+        if (node.lexeme != null) throw new IllegalStateException("Duplicate phrase '" + phrase + "'");
+        node.lexeme = lexeme;
+    }
+
+    /** Index of a character in a trie node, -1 if it can't be part of any phrase */
+    private static int indexOf(char c) {
+        if (c >= 'a' && c <= 'z') return c - 'a';
+        else if (c >= 'A' && c <= 'Z') return c - 'A';
+        else if (c == ' ') return 26;
+        else if (c == '\'') return 27;
+        else return -1;
+    }
+
+    /* ------------------------------------------------- Lexing ----------------------------------------------------- */
+
+    /** Lex a hypothesis into tokens, throws RuntimeException on words or numbers that aren't understood */
+    public static Token[] lex(String text) {
+        List<Token> tokens = new ArrayList<>();
+        NumberRun run = new NumberRun(text);
+        int length = text.length();
+        int position = skipSpaces(text, 0);
+
+        while (position < length) {
+            Lexeme match = null;
+            int matchEnd = position;
+
+            // Walk the trie as far as possible, remembering the longest phrase ending on a word boundary
+            Node node = ROOT;
+            int i = position;
+            while (node != null) {
+                if (node.lexeme != null && (i == length || text.charAt(i) == ' ')) {
+                    match = node.lexeme;
+                    matchEnd = i;
+                }
+                if (i == length) break;
+
+                char c = text.charAt(i);
+                int index = indexOf(c);
+                node = index < 0 ? null : node.children[index];
+                i = c == ' ' ? skipSpaces(text, i) : i + 1;
+            }
+
+            if (match == null) {  // Typed numeral or symbol
+                int wordEnd = text.indexOf(' ', position);
+                String word = text.substring(position, wordEnd < 0 ? length : wordEnd);
+                BigDecimal numeral = parseNumeral(word);
+                Token token = numeral == null ? SYMBOLS.get(word) : new Token(Token.Type.NUMBER, numeral);
+                if (token == null) throw new RuntimeException("'" + word + "' is not understood");
+
+                run.flush(tokens);
+                tokens.add(token);
+                position = skipSpaces(text, position + word.length());
+                continue;
+            }
+
+            if (match.numberClass != NOT_NUMBER) run.add(match, position, matchEnd);
+            else {
+                run.flush(tokens);
+                for (Token token : match.tokens) tokens.add(token);
+            }
+
+            position = skipSpaces(text, matchEnd);
+        }
+        run.flush(tokens);
+
+        return tokens.toArray(new Token[0]);
+    }
+
+    /** Value of a numeral (-?digits, -?digits.digits, -?.digits or -?digits.), null if the word isn't one */
+    private static BigDecimal parseNumeral(String word) {
+        int start = word.startsWith("-") ? 1 : 0;
+        int digits = 0, points = 0;
+
+        for (int i = start; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c >= '0' && c <= '9') digits++;
+            else if (c == '.') points++;
+            else return null;
+        }
+        return digits == 0 || points > 1 ? null : new BigDecimal(word);
+    }
+
+    private static int skipSpaces(String text, int index) {
+        while (index < text.length() && text.charAt(index) == ' ') index++;
+        return index;
+    }
+
+    /** Trie node */
+    private static final class Node {
+        private final Node[] children = new Node[ALPHABET_SIZE];
+        private Lexeme lexeme;
+    }
+
+    /** Entry of the vocabulary table */
+    private static final class Lexeme {
+        private final int numberClass;
+        private final long value;
+        private final Token[] tokens;
+
+        private Lexeme(int numberClass, long value, Token[] tokens) {
+            this.numberClass = numberClass;
+            this.value = value;
+            this.tokens = tokens;
+        }
+    }
+
+    /** Consecutive number words, converted to a single number token once the run ends */
+    private static final class NumberRun {
+        private final String text;
+        private Lexeme[] words = new Lexeme[8];
+        private int count = 0;
+        private int index;
+        private int start;
+        private int end;
+
+        private NumberRun(String text) {
+            this.text = text;
+        }
+
+        private void add(Lexeme word, int wordStart, int wordEnd) {
+            if (count == 0) start = wordStart;
+            if (count == words.length) {
+                Lexeme[] grown = new Lexeme[count * 2];
+                System.arraycopy(words, 0, grown, 0, count);
+                words = grown;
+            }
+            words[count++] = word;
+            end = wordEnd;
+        }
+
+        private void flush(List<Token> tokens) {
+            if (count > 0) {
+                tokens.add(new Token(Token.Type.NUMBER, parse()));
+                count = 0;
+            }
+        }
+
+        /** Validate and convert the run: [negative] [integer | zero] [point digit{0,12}] */
+        private BigDecimal parse() {
+            boolean isNegative = false;
+            long integerPortion = 0, decimalPortion = 0;
+            int decimalDigits = 0;
+            index = 0;
+
+            if (is(NEGATIVE)) {
+                isNegative = true;
+                index++;
+                if (index == count) throw invalid();  // Nothing follows negative
+            }
+
+            if (is(ZERO)) index++;
+            else {  // Groups with strictly decreasing scales and an optional trailing group
+                long lastScale = Long.MAX_VALUE;
+                while (is(UNIT) || is(TEEN) || is(TENS)) {
+                    long group = parseBase();
+                    if (is(SCALE)) {
+                        long scale = words[index++].value;
+                        if (scale >= lastScale) throw invalid();
+                        integerPortion += group * scale;
+                        lastScale = scale;
+                    } else {
+                        integerPortion += group;
+                        break;
+                    }
+                }
+            }
+
+            if (is(POINT)) {
+                index++;
+                while (is(ZERO) || is(UNIT)) {
+                    if (++decimalDigits > LexerTables.MAX_DECIMAL_DIGITS) throw invalid();
+                    decimalPortion = decimalPortion * 10 + words[index++].value;
+                }
+            }
+
+            if (index != count) throw invalid();
+
+            BigDecimal value = BigDecimal.valueOf(integerPortion);
+            if (decimalDigits > 0) value = value.add(BigDecimal.valueOf(decimalPortion, decimalDigits));
+            return isNegative ? value.negate() : value;
+        }
+
+        /** unit | teen | tens [unit] | unit hundred ( teen | [tens] [unit] ) */
+        private long parseBase() {
+            long value = words[index].value;
+
+            if (is(TEEN)) index++;
+            else if (is(TENS)) {
+                index++;
+                if (is(UNIT)) value += words[index++].value;
+            } else {
+                index++;
+                if (is(HUNDRED)) {
+                    value *= words[index++].value;
+                    if (is(TEEN)) value += words[index++].value;
+                    else {
+                        if (is(TENS)) value += words[index++].value;
+                        if (is(UNIT)) value += words[index++].value;
+                    }
+                }
+            }
+            return value;
+        }
+
+        private boolean is(int numberClass) {
+            return index < count && words[index].numberClass == numberClass;
+        }
+
+        private RuntimeException invalid() {
+            return new RuntimeException("'" + text.substring(start, end) + "' is not a valid number");
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Typed token produced by SpeechLexer, tokens are immutable and operator tokens are shared
+ */
+
+import java.math.BigDecimal;
+
+public final class Token {
+    /** Holds how a token may be placed in an expression, order matches the char types used in validation */
+    public enum Kind {
+        OPERAND,
+        BINARY,
+        PREFIX,
+        POSTFIX,
+        LEFT_PARENTHESIS,
+        RIGHT_PARENTHESIS
+    }
+
+    /** Holds the type of a token along with its symbol */
+    public enum Type {
+        NUMBER("", Kind.OPERAND),
+        ANSWER("answer", Kind.OPERAND),
+        PLUS("+", Kind.BINARY),
+        MINUS("-", Kind.BINARY),
+        MULTIPLY("*", Kind.BINARY),
+        DIVIDE("/", Kind.BINARY),
+        POWER("^", Kind.BINARY),
+        FACTORIAL("!", Kind.POSTFIX),
+        SQRT("sqrt", Kind.PREFIX),
+        LOG("log", Kind.PREFIX),
+        LN("ln", Kind.PREFIX),
+        SIN("sin", Kind.PREFIX),
+        COS("cos", Kind.PREFIX),
+        TAN("tan", Kind.PREFIX),
+        CSC("csc", Kind.PREFIX),
+        SEC("sec", Kind.PREFIX),
+        COT("cot", Kind.PREFIX),
+        LEFT_PARENTHESIS("(", Kind.LEFT_PARENTHESIS),
+        RIGHT_PARENTHESIS(")", Kind.RIGHT_PARENTHESIS);
+
+        private final String symbol;
+        private final Kind kind;
+
+        Type(String symbol, Kind kind) {
+            this.symbol = symbol;
+            this.kind = kind;
+        }
+
+        /** Get symbol */
+        public String getSymbol() {
+            return symbol;
+        }
+
+        /** Get kind */
+        public Kind getKind() {
+            return kind;
+        }
+    }
+
+    private final Type type;
+    private final BigDecimal value;
+
+    /** Construct an operator token */
+    Token(Type type) {
+        this(type, null);
+    }
+
+    /** Construct a token with a value, only used for numbers */
+    Token(Type type, BigDecimal value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    /** Get type */
+    public Type getType() {
+        return type;
+    }
+
+    /** Get kind */
+    public Kind getKind() {
+        return type.kind;
+    }
+
+    /** Get value, null for everything but numbers */
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.NUMBER ? value.toPlainString() : type.symbol;
+    }
+}
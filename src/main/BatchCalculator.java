@@ -0,0 +1,216 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Headless batch mode, evaluates spoken form expressions (i.e. "two plus two") one per line without loading any
+ * recognition or TTS models. Lines are evaluated in chunks across a worker pool and written out in input order as
+ * "<expression>\t<result>". Throughput and latency percentiles are printed to stderr once the input is exhausted.
+ * Typed numerals and symbols separated by spaces (i.e. "2 + 2", "sqrt 16") are understood as well.
+ *
+ * Usage: java main.BatchCalculator [-t threads] [file]   (reads stdin if no file or "-" is given)
+ */
+
+import calculatorassets.SpeechExpression;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BatchCalculator {
+    private static final int CHUNK_SIZE = 512;  // Lines per task
+    private static final int CHUNKS_PER_THREAD = 4;  // Chunks in flight per worker, bounds memory use
+
+    private final int threads;
+
+    /** Constructor for class */
+    public BatchCalculator(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Need at least one worker thread");
+        this.threads = threads;
+    }
+
+    /** Evaluate every line of input, writing results in input order, and return the collected statistics */
+    public Statistics run(BufferedReader input, Writer output) throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        Statistics statistics = new Statistics();
+        long startTime = System.nanoTime();
+
+        try {
+            List<String> lines = new ArrayList<>(CHUNK_SIZE);
+            String line;
+
+            while ((line = input.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == CHUNK_SIZE) {
+                    submit(workers, inFlight, lines);
+                    lines = new ArrayList<>(CHUNK_SIZE);
+
+                    // Write out the oldest chunk once enough are queued
+                    if (inFlight.size() >= threads * CHUNKS_PER_THREAD) write(inFlight.poll(), output, statistics);
+                }
+            }
+            if (!lines.isEmpty()) submit(workers, inFlight, lines);
+
+            while (!inFlight.isEmpty()) write(inFlight.poll(), output, statistics);
+            output.flush();
+        } finally {
+            workers.shutdownNow();
+        }
+
+        statistics.elapsedNanos = System.nanoTime() - startTime;
+        return statistics;
+    }
+
+    private void submit(ExecutorService workers, ArrayDeque<Future<Chunk>> inFlight, final List<String> lines) {
+        inFlight.add(workers.submit(() -> evaluate(lines)));
+    }
+
+    private void write(Future<Chunk> future, Writer output, Statistics statistics)
+            throws IOException, InterruptedException {
+        Chunk chunk;
+
+        try {
+            chunk = future.get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Batch worker failed", ex.getCause());
+        }
+
+        for (int i = 0; i < chunk.lines.size(); i++) {
+            output.write(chunk.lines.get(i));
+            output.write('\t');
+            output.write(chunk.results[i]);
+            output.write('\n');
+        }
+        statistics.add(chunk);
+    }
+
+    /** Evaluate a chunk of lines, each line on its own so "answer" is always zero */
+    private static Chunk evaluate(List<String> lines) {
+        Chunk chunk = new Chunk(lines);
+
+        for (int i = 0; i < lines.size(); i++) {
+            long start = System.nanoTime();
+
+            try {
+                chunk.results[i] = new SpeechExpression(lines.get(i)).getResultString();
+            } catch (ArithmeticException ex) {  // Divide by zero error
+                chunk.results[i] = "undefined";
+                chunk.failures++;
+            } catch (RuntimeException ex) {
+                chunk.results[i] = "error: " + ex.getMessage();
+                chunk.failures++;
+            }
+
+            chunk.latencies[i] = System.nanoTime() - start;
+        }
+        return chunk;
+    }
+
+    /* ---------------------------------------------------- Results ------------------------------------------------- */
+
+    /** Results of one task */
+    private static final class Chunk {
+        private final List<String> lines;
+        private final String[] results;
+        private final long[] latencies;
+        private int failures = 0;
+
+        private Chunk(List<String> lines) {
+            this.lines = lines;
+            this.results = new String[lines.size()];
+            this.latencies = new long[lines.size()];
+        }
+    }
+
+    /** Throughput and latency of a batch run */
+    public static final class Statistics {
+        private long[] latencies = new long[CHUNK_SIZE];
+        private int count = 0;
+        private int failures = 0;
+        private long elapsedNanos;
+
+        private void add(Chunk chunk) {
+            if (count + chunk.latencies.length > latencies.length)
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + chunk.latencies.length));
+            System.arraycopy(chunk.latencies, 0, latencies, count, chunk.latencies.length);
+            count += chunk.latencies.length;
+            failures += chunk.failures;
+        }
+
+        /** Get number of expressions evaluated */
+        public int getCount() {
+            return count;
+        }
+
+        /** Get number of expressions that couldn't be evaluated */
+        public int getFailures() {
+            return failures;
+        }
+
+        /** Get expressions per second over the whole run */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : count * 1e9 / elapsedNanos;
+        }
+
+        /** Get latency percentile in nanoseconds, percentile between 0 and 100 */
+        public long getPercentile(double percentile) {
+            return percentile(sorted(), percentile);
+        }
+
+        @Override
+        public String toString() {
+            long[] sorted = sorted();
+            return String.format("%d expressions (%d failed) in %.3f s, %.0f expressions/s%n" +
+                            "latency p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us",
+                    count, failures, elapsedNanos / 1e9, getThroughput(), percentile(sorted, 50) / 1e3,
+                    percentile(sorted, 90) / 1e3, percentile(sorted, 99) / 1e3, percentile(sorted, 100) / 1e3);
+        }
+
+        private long[] sorted() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) return 0;
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.min(sorted.length - 1, Math.max(0, index))];
+        }
+    }
+
+    /* -------------------------------------------------------------------------------------------------------------- */
+
+    /** Main method */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String file = "-";
+
+        for (int i = 0; i < args.length; i++) {
+            if ((args[i].equals("-t") || args[i].equals("--threads")) && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else file = args[i];
+        }
+
+        InputStream in = file.equals("-") ? System.in : new FileInputStream(file);
+        try (BufferedReader input = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+            Writer output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+            Statistics statistics = new BatchCalculator(threads).run(input, output);
+            System.err.println(statistics);
+        }
+    }
+}
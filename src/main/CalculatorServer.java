@@ -0,0 +1,207 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Hosts many calculator sessions in one JVM over a local socket. Every connection is a session with its own answer
+ * history, angle mode and express flag, served by its own thread. Clients send one command per line in the same form
+ * the recognizer produces (i.e. "what is two plus two", typed numerals and symbols separated by spaces such as
+ * "what is 2 + 2" work too), responses come back as text lines, or as WAV clips when the server is started with --audio
+ * (each clip prefixed by its length as a 4 byte big endian int).
+ *
+ * Backpressure: at most maxSessions sessions are served at once, further connections are told the server is busy and
+ * closed. Commands longer than MAX_LINE_LENGTH close the session, and sessions idle for longer than the idle timeout
+ * are evicted.
+ *
+ * Usage: java main.CalculatorServer [--port 7270] [--max-sessions 256] [--idle-timeout 300] [--audio]
+ */
+
+import calculatorassets.SpeechExpression;
+import marytts.exceptions.SynthesisException;
+import tts.TextToSpeech;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+public class CalculatorServer {
+    private static final int MAX_LINE_LENGTH = 1024;
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final int port;
+    private final int idleTimeoutMillis;
+    private final Semaphore sessionPermits;
+    private final TextToSpeech tts;  // Null when responding with text
+    private final AtomicLong sessionCount = new AtomicLong();
+
+    private volatile boolean running = false;
+    private ServerSocket serverSocket;
+
+    /** Constructor for class, tts may be null to respond with text only */
+    public CalculatorServer(int port, int maxSessions, long idleTimeout, TimeUnit unit, TextToSpeech tts) {
+        if (maxSessions < 1) throw new IllegalArgumentException("Need room for at least one session");
+        this.port = port;
+        this.idleTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, unit.toMillis(idleTimeout));
+        this.sessionPermits = new Semaphore(maxSessions);
+        this.tts = tts;
+    }
+
+    /** Accept sessions until stopped, blocks the calling thread */
+    public void serve() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        running = true;
+        logger.log(Level.INFO, "Calculator server listening on port " + serverSocket.getLocalPort() + ".\n");
+
+        try {
+            while (running) {
+                Socket socket = serverSocket.accept();
+
+                if (!sessionPermits.tryAcquire()) {  // Full, reject instead of queueing
+                    reject(socket);
+                    continue;
+                }
+
+                Thread thread = new Thread(() -> {
+                    try {
+                        runSession(socket);
+                    } finally {
+                        sessionPermits.release();
+                    }
+                }, "calculator-session-" + sessionCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException ex) {
+            if (running) throw ex;  // Otherwise closed by stop()
+        }
+    }
+
+    /** Stop accepting sessions, running sessions finish on their own */
+    public void stop() throws IOException {
+        running = false;
+        if (serverSocket != null) serverSocket.close();
+    }
+
+    /** Get the port the server is listening on */
+    public int getLocalPort() {
+        return serverSocket == null ? port : serverSocket.getLocalPort();
+    }
+
+    private void reject(Socket socket) {
+        try (Socket rejected = socket) {
+            Writer writer = new OutputStreamWriter(rejected.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write("Server busy, please try again later.\n");
+            writer.flush();
+        } catch (IOException ex) {
+            logger.log(Level.FINE, null, ex);
+        }
+    }
+
+    /** Serve one connection until the client leaves, idles out or misbehaves */
+    private void runSession(Socket socket) {
+        try (Socket client = socket) {
+            client.setSoTimeout(idleTimeoutMillis);
+            client.setTcpNoDelay(true);
+
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            final OutputStream out = client.getOutputStream();
+            CalculatorSession session = new CalculatorSession(new SpeechExpression(), tts == null ?
+                    text -> writeText(out, text) : text -> writeAudio(out, text));
+            StringBuilder line = new StringBuilder();
+
+            try {
+                while (readLine(in, line)) {
+                    String command = line.toString().trim();
+                    if (!command.isEmpty()) session.makeDecision(command);
+                }
+            } catch (SocketTimeoutException ex) {
+                writeText(out, "Session closed after being idle.");
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            logger.log(Level.FINE, "Session ended", ex);
+        }
+    }
+
+    /** Read a line into line, false at end of stream */
+    private static boolean readLine(InputStream in, StringBuilder line) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int b;
+
+        line.setLength(0);
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (bytes.size() == MAX_LINE_LENGTH) throw new IOException("Command too long");
+            bytes.write(b);
+        }
+        line.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        return b != -1 || bytes.size() > 0;
+    }
+
+    private static void writeText(OutputStream out, String text) {
+        try {
+            out.write((text + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeAudio(OutputStream out, String text) {
+        try (AudioInputStream audio = tts.synthesize(text)) {
+            ByteArrayOutputStream wav = new ByteArrayOutputStream();
+            AudioSystem.write(audio, AudioFileFormat.Type.WAVE, wav);
+
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(wav.size());
+            wav.writeTo(data);
+            data.flush();
+        } catch (SynthesisException ex) {
+            logger.log(Level.WARNING, "Error saying phrase", ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /* -------------------------------------------------------------------------------------------------------------- */
+
+    /** Main method */
+    public static void main(String[] args) throws IOException {
+        int port = 7270, maxSessions = 256;
+        long idleTimeout = 300;
+        boolean audio = false;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) port = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--max-sessions") && i + 1 < args.length) maxSessions = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--idle-timeout") && i + 1 < args.length) idleTimeout = Long.parseLong(args[++i]);
+            else if (args[i].equals("--audio")) audio = true;
+        }
+
+        TextToSpeech tts = null;
+        if (audio) {
+            tts = new TextToSpeech();
+            tts.setVoice("cmu-rms-hsmm");
+            tts.prewarm(CalculatorSession.FIXED_RESPONSES);
+        }
+
+        new CalculatorServer(port, maxSessions, idleTimeout, TimeUnit.SECONDS, tts).serve();
+    }
+}
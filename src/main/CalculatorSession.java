@@ -0,0 +1,126 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Decision logic for one calculator session, shared by every front end (microphone, server). Each session keeps its
+ * own answer history and angle mode (in its SpeechExpression) and its own express flag. Responses go to a Speaker,
+ * which speaks them out loud for the desktop calculator or sends them back to a client for the server.
+ */
+
+import calculatorassets.SpeechExpression;
+import main.ResponseTemplates.Response;
+import metrics.Metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class CalculatorSession {
+    /** Phrases of responses that continue with nothing but a spoken number, for concatenative speech */
+    public static final List<String> RESULT_PHRASES = Collections.unmodifiableList(Arrays.asList(
+            ResponseTemplates.ANSWER_WAS, ResponseTemplates.PREVIOUS_ANSWER_WAS, ResponseTemplates.IS_EQUAL_TO));
+
+    /** Every response that doesn't depend on the expression, for prewarming audio caches */
+    public static final List<String> FIXED_RESPONSES = ResponseTemplates.fixedResponses();
+
+    private static final Logger logger = Logger.getLogger(CalculatorSession.class.getName());
+
+    private final IntentRouter router = IntentRouter.getCommands();
+    private final SpeechExpression expression;
+    private final Speaker tts;
+    private boolean express = false;
+
+    /** Receives the responses of a session */
+    public interface Speaker {
+        void speak(String text);
+    }
+
+    /** Constructor for class */
+    public CalculatorSession(SpeechExpression expression, Speaker tts) {
+        this.expression = expression;
+        this.tts = tts;
+    }
+
+    /** Handle a command, responding with the current calculator mode's templates */
+    public void makeDecision(String speech) {
+        ResponseTemplates responses = express ? ResponseTemplates.EXPRESS : ResponseTemplates.REGULAR;
+
+        try {
+            long start = System.nanoTime();
+            IntentRouter.Route route = router.route(speech);
+            Metrics.DISPATCH.recordSince(start);
+
+            switch (route.getIntent()) {
+                case SET_DEGREES:
+                    expression.setIsRadian(false);
+                    tts.speak(responses.render(Response.DEGREES_SET));
+                    break;
+                case SET_RADIANS:
+                    expression.setIsRadian(true);
+                    tts.speak(responses.render(Response.RADIANS_SET));
+                    break;
+                case SET_EXPRESS:
+                    express = true;
+                    tts.speak(responses.render(Response.EXPRESS_SET));
+                    break;
+                case SET_NORMAL:
+                    express = false;
+                    tts.speak(responses.render(Response.NORMAL_SET));
+                    break;
+                case SET_INVALID:
+                    tts.speak(responses.render(Response.SET_NOT_UNDERSTOOD));
+                    break;
+                case GET_ANSWER:
+                    tts.speak(responses.render(Response.ANSWER, null, expression.getSpokenResult()));
+                    break;
+                case GET_PREVIOUS_ANSWER:
+                    tts.speak(responses.render(Response.PREVIOUS_ANSWER, null, expression.getSpokenPreviousResult()));
+                    break;
+                case GET_INVALID:
+                    tts.speak(responses.render(Response.GET_NOT_UNDERSTOOD));
+                    break;
+                case GET_ANGLE_MODE:
+                    tts.speak(responses.render(expression.isRad() ? Response.CURRENT_RADIANS :
+                            Response.CURRENT_DEGREES));
+                    break;
+                case GET_CALCULATOR_MODE:
+                    tts.speak(responses.render(Response.CURRENT_CALCULATOR_MODE));
+                    break;
+                case EVALUATE:
+                    evaluate(route.getArgument(), responses);
+                    break;
+                default:
+                    tts.speak(responses.render(Response.INPUT_NOT_UNDERSTOOD));
+            }
+        } catch (RuntimeException ex) {
+            tts.speak(responses.render(Response.INPUT_NOT_UNDERSTOOD));
+        }
+    }
+
+    /** Get if session is in express mode */
+    public boolean isExpress() {
+        return express;
+    }
+
+    /** Get expression */
+    public SpeechExpression getExpression() {
+        return expression;
+    }
+
+    /** Calculate result and return to user */
+    private void evaluate(String saidExpression, ResponseTemplates responses) {
+        try {
+            expression.setAcousticRepresentation(saidExpression);
+            logger.log(Level.FINE, "Converted expression: {0}", expression.getConvertedExpression());
+            tts.speak(responses.render(Response.RESULT, expression.getAcousticRepresentation(),
+                    expression.getSpokenResult()));
+        } catch (ArithmeticException ex) {  // Divide by zero error
+            tts.speak(responses.render(Response.UNDEFINED, expression.getAcousticRepresentation(), null));
+        } catch (RuntimeException ex) {
+            Metrics.INVALID_EXPRESSIONS.increment();
+            tts.speak(responses.render(Response.EXPRESSION_NOT_UNDERSTOOD));
+        }
+    }
+}
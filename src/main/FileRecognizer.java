@@ -0,0 +1,302 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Offline counterpart of VoiceCalculator, recognizes recorded WAV files of spoken calculations instead of listening on
+ * the microphone. Uses the same Configuration and commands grammar through StreamSpeechRecognizer, with one decoder
+ * per worker thread since a decoder can only work on one stream at a time. Every hypothesis in a file goes through the
+ * same decision logic as live commands, each file being its own session (so "answer" carries over within a file). The
+ * wake phrase is skipped, a recording doesn't need to be woken up.
+ *
+ * Results are written in file order as "<file>\t<hypothesis>\t<response>", one line per hypothesis. The real time
+ * factor (decoding time over audio duration, per decoder) and throughput are printed to stderr at the end.
+ *
+ * Audio has to be 16 kHz 16 bit mono, other encodings at that rate are converted.
+ *
+ * Usage: java main.FileRecognizer [-t threads] [-o results file] [-g grammar directory] <directory or WAV files>...
+ */
+
+import calculatorassets.ExpressionEvaluator;
+import calculatorassets.SpeechExpression;
+
+import edu.cmu.sphinx.api.Configuration;
+import edu.cmu.sphinx.api.SpeechResult;
+import edu.cmu.sphinx.api.StreamSpeechRecognizer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+public class FileRecognizer {
+    /** Format the acoustic model was trained on */
+    public static final AudioFormat DECODER_FORMAT = new AudioFormat(16000f, 16, 1, true, false);
+
+    private final int threads;
+    private final String grammarPath;
+
+    /** Constructor for class */
+    public FileRecognizer(int threads) {
+        this(threads, VoiceCalculator.GRAMMAR_PATH);
+    }
+
+    /** Constructor for class, decoding with the commands grammar in another directory */
+    public FileRecognizer(int threads, String grammarPath) {
+        if (threads < 1) throw new IllegalArgumentException("Need at least one decoder thread");
+        this.threads = threads;
+        this.grammarPath = grammarPath;
+    }
+
+    /** Recognize every file, writing results in file order, and return the collected statistics */
+    public Statistics run(List<File> files, Writer output) throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        FileResult[] results = new FileResult[files.size()];
+        AtomicInteger next = new AtomicInteger();
+        List<Future<Long>> decoders = new ArrayList<>(threads);
+        Statistics statistics = new Statistics();
+        long startTime = System.nanoTime();
+        ExpressionEvaluator evaluator = VoiceCalculator.createEvaluator(grammarPath);
+
+        try {
+            // Each worker loads its own decoder, then takes files until there are none left
+            for (int i = 0; i < Math.min(threads, files.size()); i++)
+                decoders.add(workers.submit(() -> decode(files, results, next, evaluator, grammarPath)));
+
+            for (Future<Long> decoder : decoders) {
+                try {
+                    statistics.loadNanos = Math.max(statistics.loadNanos, decoder.get());
+                } catch (ExecutionException ex) {
+                    throw new IllegalStateException("Decoder failed", ex.getCause());
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        statistics.elapsedNanos = System.nanoTime() - startTime;
+        statistics.decoders = decoders.size();
+
+        for (FileResult result : results) {
+            for (int i = 0; i < result.hypotheses.size(); i++) {
+                output.write(result.file.getPath());
+                output.write('\t');
+                output.write(result.hypotheses.get(i));
+                output.write('\t');
+                output.write(result.responses.get(i));
+                output.write('\n');
+            }
+            statistics.add(result);
+        }
+        output.flush();
+        return statistics;
+    }
+
+    /** Body of a worker, returns how long loading its decoder took */
+    private static long decode(List<File> files, FileResult[] results, AtomicInteger next,
+                               ExpressionEvaluator evaluator, String grammarPath) throws IOException {
+        long loadStart = System.nanoTime();
+        Configuration configuration = VoiceCalculator.createConfiguration();
+        configuration.setGrammarPath(grammarPath);
+        StreamSpeechRecognizer recognizer = new StreamSpeechRecognizer(configuration);
+        long loadNanos = System.nanoTime() - loadStart;
+
+        int index;
+        while ((index = next.getAndIncrement()) < files.size())
+            results[index] = recognize(recognizer, files.get(index), evaluator);
+        return loadNanos;
+    }
+
+    /** Recognize one file and run its hypotheses through a fresh session */
+    private static FileResult recognize(StreamSpeechRecognizer recognizer, File file, ExpressionEvaluator evaluator) {
+        FileResult result = new FileResult(file);
+        List<String> responses = new ArrayList<>();
+        CalculatorSession session = new CalculatorSession(new SpeechExpression(evaluator), responses::add);
+        long start = System.nanoTime();
+
+        try (CountingInputStream audio = new CountingInputStream(open(file))) {
+            recognizer.startRecognition(audio);
+            try {
+                SpeechResult speechResult;
+                while ((speechResult = recognizer.getResult()) != null) {
+                    String hypothesis = speechResult.getHypothesis();
+                    if (hypothesis.isEmpty() || hypothesis.equals(VoiceCalculator.WAKE_PHRASE)) continue;
+
+                    responses.clear();
+                    session.makeDecision(hypothesis);
+                    result.hypotheses.add(hypothesis);
+                    result.responses.add(String.join(" ", responses));
+                }
+            } finally {
+                recognizer.stopRecognition();
+            }
+            result.audioSeconds = audio.count / (double) DECODER_FORMAT.getFrameSize() / DECODER_FORMAT.getFrameRate();
+        } catch (IOException | UnsupportedAudioFileException | IllegalArgumentException ex) {
+            result.hypotheses.add("");
+            result.responses.add("error: " + ex.getMessage());
+            result.failed = true;
+        }
+
+        result.decodeNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /** Open a WAV file as PCM in the decoder's format, throws IllegalArgumentException if it can't be converted */
+    private static AudioInputStream open(File file) throws IOException, UnsupportedAudioFileException {
+        AudioInputStream audio = AudioSystem.getAudioInputStream(file);
+        if (audio.getFormat().matches(DECODER_FORMAT)) return audio;
+
+        try {
+            return AudioSystem.getAudioInputStream(DECODER_FORMAT, audio);
+        } catch (IllegalArgumentException ex) {
+            audio.close();
+            throw new IllegalArgumentException("Unsupported format " + audio.getFormat() + ", needs " +
+                    DECODER_FORMAT);
+        }
+    }
+
+    /** Files to recognize, directories are expanded to the WAV files in them */
+    public static List<File> listFiles(List<String> paths) {
+        List<File> files = new ArrayList<>();
+
+        for (String path : paths) {
+            File file = new File(path);
+            File[] wavs = file.isDirectory() ?
+                    file.listFiles((directory, name) -> name.toLowerCase(Locale.ROOT).endsWith(".wav")) : null;
+
+            if (wavs == null) files.add(file);
+            else {
+                Arrays.sort(wavs);
+                files.addAll(Arrays.asList(wavs));
+            }
+        }
+        return files;
+    }
+
+    /* ---------------------------------------------------- Results ------------------------------------------------- */
+
+    /** Results of one file */
+    private static final class FileResult {
+        private final File file;
+        private final List<String> hypotheses = new ArrayList<>();
+        private final List<String> responses = new ArrayList<>();
+        private double audioSeconds;
+        private long decodeNanos;
+        private boolean failed;
+
+        private FileResult(File file) {
+            this.file = file;
+        }
+    }
+
+    /** Real time factor and throughput of a run */
+    public static final class Statistics {
+        private int files = 0;
+        private int failures = 0;
+        private int hypotheses = 0;
+        private int decoders = 0;
+        private double audioSeconds = 0;
+        private long decodeNanos = 0;
+        private long loadNanos = 0;  // Of the slowest decoder
+        private long elapsedNanos;
+
+        private void add(FileResult result) {
+            files++;
+            if (result.failed) failures++;
+            else hypotheses += result.hypotheses.size();
+            audioSeconds += result.audioSeconds;
+            decodeNanos += result.decodeNanos;
+        }
+
+        /** Get decoding time over audio duration for a single decoder, below 1 is faster than real time */
+        public double getRealTimeFactor() {
+            return audioSeconds == 0 ? 0 : decodeNanos / 1e9 / audioSeconds;
+        }
+
+        /** Get seconds of audio recognized per second of wall clock time, decoder loading included */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : audioSeconds * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d files (%d failed), %d hypotheses, %.1f s of audio in %.3f s " +
+                            "on %d decoders (loading %.3f s)%n" +
+                            "real time factor %.3f per decoder, throughput %.2f s of audio/s, %.2f files/s",
+                    files, failures, hypotheses, audioSeconds, elapsedNanos / 1e9, decoders, loadNanos / 1e9,
+                    getRealTimeFactor(), getThroughput(), elapsedNanos == 0 ? 0 : files * 1e9 / elapsedNanos);
+        }
+    }
+
+    /** Counts the bytes handed to the decoder, for the audio duration */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int nRead = super.read(buffer, offset, length);
+            if (nRead > 0) count += nRead;
+            return nRead;
+        }
+    }
+
+    /* -------------------------------------------------------------------------------------------------------------- */
+
+    /** Main method */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String resultsFile = "recognition-results.tsv", grammarPath = VoiceCalculator.GRAMMAR_PATH;
+        List<String> paths = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if ((args[i].equals("-t") || args[i].equals("--threads")) && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else if ((args[i].equals("-o") || args[i].equals("--output")) && i + 1 < args.length)
+                resultsFile = args[++i];
+            else if ((args[i].equals("-g") || args[i].equals("--grammar")) && i + 1 < args.length)
+                grammarPath = args[++i];
+            else paths.add(args[i]);
+        }
+        if (paths.isEmpty()) {
+            System.err.println("Usage: java main.FileRecognizer [-t threads] [-o results file] [-g grammar " +
+                    "directory] <directory or files>");
+            System.exit(2);
+        }
+
+        List<File> files = listFiles(paths);
+        try (Writer output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(resultsFile),
+                StandardCharsets.UTF_8))) {
+            Statistics statistics = new FileRecognizer(threads, grammarPath).run(files, output);
+            System.err.println(statistics);
+            System.err.println("Results written to " + resultsFile);
+        }
+    }
+}
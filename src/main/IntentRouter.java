@@ -0,0 +1,201 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Classifies a command and extracts its argument in one pass over its words. Command phrasings are compiled once into
+ * a word trie, written in the same notation as the commands grammar: "[the]" is optional and "(answer | result)" is
+ * a choice. Exact commands (i.e. "set the angle mode to degrees") have to match the whole utterance. Prefix commands
+ * (i.e. "calculate [the value of]") match their longest phrasing followed by at least one more word, which becomes the
+ * argument. An exact match wins over a prefix match, and a longer prefix over a shorter one.
+ *
+ * The router is immutable once built and shared by every session.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public final class IntentRouter {
+    /** What a command asks for */
+    public enum Intent {
+        SET_DEGREES, SET_RADIANS, SET_EXPRESS, SET_NORMAL, SET_INVALID,
+        GET_ANSWER, GET_PREVIOUS_ANSWER, GET_INVALID,
+        GET_ANGLE_MODE, GET_CALCULATOR_MODE,
+        EVALUATE,
+        NOT_UNDERSTOOD
+    }
+
+    private static final IntentRouter commands = new IntentRouter()
+            .exact(Intent.SET_DEGREES, "(set | change) [the] angle mode to degrees")
+            .exact(Intent.SET_RADIANS, "(set | change) [the] angle mode to ray dee ins")
+            .exact(Intent.SET_EXPRESS, "(set | change) [the] calculator mode to express")
+            .exact(Intent.SET_NORMAL, "(set | change) [the] calculator mode to (regular | normal)")
+            .prefix(Intent.SET_INVALID, "(set | change) [the]")
+            .exact(Intent.GET_ANSWER, "(get | what was) [the] (answer | result)")
+            .exact(Intent.GET_PREVIOUS_ANSWER, "(get | what was) [the] previous (answer | result)")
+            .prefix(Intent.GET_INVALID, "(get | what was) [the]")
+            .exact(Intent.GET_ANGLE_MODE, "what is [the] [current] [value of] angle mode")
+            .exact(Intent.GET_CALCULATOR_MODE, "what is [the] [current] [value of] calculator mode")
+            .prefix(Intent.EVALUATE, "what is [the] [current] [value of]")
+            .prefix(Intent.EVALUATE, "(compute | calculate) [the value of]");
+
+    private final Node root = new Node();
+
+    private IntentRouter() {
+    }
+
+    /** Get the router for the calculator's commands */
+    public static IntentRouter getCommands() {
+        return commands;
+    }
+
+    /** Add a command matching the whole utterance */
+    private IntentRouter exact(Intent intent, String phrasing) {
+        for (List<String> words : expand(phrasing)) node(words).exact = intent;
+        return this;
+    }
+
+    /** Add a command whose remaining words are its argument */
+    private IntentRouter prefix(Intent intent, String phrasing) {
+        for (List<String> words : expand(phrasing)) node(words).prefix = intent;
+        return this;
+    }
+
+    /** Classify an utterance, NOT_UNDERSTOOD if no command matches */
+    public Route route(String speech) {
+        Node node = root;
+        Intent prefix = null;
+        int argument = -1;
+        int position = 0, length = speech.length();
+
+        while (node != null && position < length) {
+            int end = speech.indexOf(' ', position);
+            if (end == -1) end = length;
+
+            node = node.child(speech, position, end - position);
+            position = end + 1;
+            if (node != null && node.prefix != null && position < length) {
+                prefix = node.prefix;
+                argument = position;
+            }
+        }
+
+        if (node != null && node.exact != null) return new Route(node.exact, "");
+        if (prefix != null) return new Route(prefix, speech.substring(argument));
+        return new Route(Intent.NOT_UNDERSTOOD, speech);
+    }
+
+    private Node node(List<String> words) {
+        Node node = root;
+        for (String word : words) node = node.add(word);
+        return node;
+    }
+
+    /* ---------------------------------------------- Phrasing notation --------------------------------------------- */
+
+    /** Every word sequence a phrasing stands for */
+    private static List<List<String>> expand(String phrasing) {
+        String[] tokens = phrasing.replace("(", " ( ").replace(")", " ) ").replace("[", " [ ").replace("]", " ] ")
+                .replace("|", " | ").trim().split(" +");
+        int[] position = {0};
+        List<List<String>> expanded = sequence(tokens, position);
+        if (position[0] != tokens.length) throw new IllegalArgumentException("Unbalanced phrasing: " + phrasing);
+        return expanded;
+    }
+
+    /** Words and groups up to the end of the enclosing group */
+    private static List<List<String>> sequence(String[] tokens, int[] position) {
+        List<List<String>> expanded = Collections.singletonList(Collections.<String>emptyList());
+
+        while (position[0] < tokens.length) {
+            String token = tokens[position[0]];
+            List<List<String>> item;
+
+            if (token.equals(")") || token.equals("]") || token.equals("|")) break;
+            position[0]++;
+            if (token.equals("(") || token.equals("[")) {
+                item = alternatives(tokens, position, token.equals("(") ? ")" : "]");
+                if (token.equals("[")) item.add(Collections.<String>emptyList());
+            } else {
+                item = Collections.singletonList(Collections.singletonList(token));
+            }
+
+            List<List<String>> joined = new ArrayList<>();
+            for (List<String> head : expanded) {
+                for (List<String> tail : item) {
+                    List<String> words = new ArrayList<>(head);
+                    words.addAll(tail);
+                    joined.add(words);
+                }
+            }
+            expanded = joined;
+        }
+        return expanded;
+    }
+
+    /** Sequences separated by "|" up to the closing bracket */
+    private static List<List<String>> alternatives(String[] tokens, int[] position, String close) {
+        List<List<String>> expanded = new ArrayList<>(sequence(tokens, position));
+
+        while (position[0] < tokens.length && tokens[position[0]].equals("|")) {
+            position[0]++;
+            expanded.addAll(sequence(tokens, position));
+        }
+        if (position[0] >= tokens.length || !tokens[position[0]].equals(close))
+            throw new IllegalArgumentException("Expected '" + close + "' in " + Arrays.toString(tokens));
+        position[0]++;
+        return expanded;
+    }
+
+    /* -------------------------------------------------------------------------------------------------------------- */
+
+    /** A classified utterance */
+    public static final class Route {
+        private final Intent intent;
+        private final String argument;
+
+        private Route(Intent intent, String argument) {
+            this.intent = intent;
+            this.argument = argument;
+        }
+
+        /** Get intent */
+        public Intent getIntent() {
+            return intent;
+        }
+
+        /** Get the words after a prefix command, empty for exact commands and the whole utterance if not understood */
+        public String getArgument() {
+            return argument;
+        }
+    }
+
+    /** Trie node, children are few so they are scanned rather than hashed, which needs no substring per word */
+    private static final class Node {
+        private String[] words = new String[0];
+        private Node[] children = new Node[0];
+        private Intent exact;
+        private Intent prefix;
+
+        private Node child(String speech, int offset, int length) {
+            for (int i = 0; i < words.length; i++) {
+                if (words[i].length() == length && speech.regionMatches(offset, words[i], 0, length))
+                    return children[i];
+            }
+            return null;
+        }
+
+        private Node add(String word) {
+            Node child = child(word, 0, word.length());
+            if (child == null) {
+                child = new Node();
+                words = Arrays.copyOf(words, words.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                words[words.length - 1] = word;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
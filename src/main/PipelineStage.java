@@ -0,0 +1,138 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * One stage of the response pipeline: a bounded queue drained by a thread of its own. Putting into a full queue blocks,
+ * so a slow stage holds back the ones before it instead of letting work pile up. Items carry the pipeline generation
+ * they were produced in, raising the generation (on barge-in) makes every older item stale so it is discarded instead
+ * of handled. Items also carry their origin, when the command they stem from was submitted, for end to end latencies.
+ * Timing is kept per stage: time spent waiting in the queue and time spent handling.
+ */
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class PipelineStage<T> implements AutoCloseable {
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final String name;
+    private final BlockingQueue<Item<T>> queue;
+    private final Handler<T> handler;
+    private final Consumer<T> discard;
+    private final AtomicLong generation;
+    private final Thread thread;
+
+    // Written by the stage thread only
+    private volatile long handled;
+    private volatile long waitNanos;
+    private volatile long busyNanos;
+    private volatile long maxBusyNanos;
+    private final AtomicLong discarded = new AtomicLong();
+
+    /** Handles the items of a stage, usually by putting its results into the next stage */
+    interface Handler<T> {
+        void handle(T item, long generation, long origin) throws Exception;
+    }
+
+    /**
+     * Construct and start a stage, discard is given items that are dropped without being handled. Items never go stale
+     * if generation is null
+     */
+    PipelineStage(String name, int capacity, AtomicLong generation, Handler<T> handler, Consumer<T> discard) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.generation = generation;
+        this.handler = handler;
+        this.discard = discard;
+
+        thread = new Thread(this::run, "pipeline-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue an item produced in the given generation, origin being a System.nanoTime(). Blocks while the stage is full,
+     * stale items are discarded
+     */
+    void put(T item, long itemGeneration, long origin) throws InterruptedException {
+        if (isStale(itemGeneration)) discard(item);
+        else queue.put(new Item<>(item, itemGeneration, origin));
+    }
+
+    /** Discard everything queued */
+    void clear() {
+        Item<T> item;
+        while ((item = queue.poll()) != null) discard(item.value);
+    }
+
+    /** Stop the stage thread, discarding what is queued */
+    @Override
+    public void close() {
+        thread.interrupt();
+        clear();
+    }
+
+    /** Get a line of timing statistics */
+    String report() {
+        long count = handled;
+        return String.format(Locale.ROOT, "%-10s %6d handled %4d discarded %2d queued, wait %8.1f ms avg, " +
+                        "busy %8.1f ms avg %8.1f ms max", name, count, discarded.get(), queue.size(),
+                count == 0 ? 0 : waitNanos / 1e6 / count, count == 0 ? 0 : busyNanos / 1e6 / count, maxBusyNanos / 1e6);
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Item<T> item = queue.take();
+                if (isStale(item.generation)) {
+                    discard(item.value);
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    handler.handle(item.value, item.generation, item.origin);
+                } catch (InterruptedException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    logger.log(Level.WARNING, "Error in " + name + " stage", ex);
+                }
+
+                long busy = System.nanoTime() - start;
+                waitNanos += start - item.queued;
+                busyNanos += busy;
+                maxBusyNanos = Math.max(maxBusyNanos, busy);
+                handled++;
+            }
+        } catch (InterruptedException ex) {
+            // Closed
+        }
+    }
+
+    private boolean isStale(long itemGeneration) {
+        return generation != null && itemGeneration < generation.get();
+    }
+
+    private void discard(T item) {
+        discarded.incrementAndGet();
+        if (discard != null) discard.accept(item);
+    }
+
+    /** A queued item */
+    private static final class Item<T> {
+        private final T value;
+        private final long generation;
+        private final long origin;
+        private final long queued = System.nanoTime();
+
+        private Item(T value, long generation, long origin) {
+            this.value = value;
+            this.generation = generation;
+            this.origin = origin;
+        }
+    }
+}
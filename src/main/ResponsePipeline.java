@@ -0,0 +1,134 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Everything after decoding, split into stages each on its own thread: command handling (the decision logic and
+ * evaluation), synthesis and playback. The recognizer thread only decodes and hands hypotheses over, so the next
+ * command is decoded and evaluated while the previous answer is still being spoken. Stages are connected by small
+ * bounded queues, a slow stage blocks the one before it, and ultimately decoding, rather than queueing up answers
+ * nobody is waiting for anymore.
+ *
+ * interrupt() is barge-in for the whole pipeline: it stops what is playing and drops every response not yet played.
+ * Commands already recognized are still handled, their answers are spoken afterwards.
+ *
+ * Synthesis, the time from submitting a command until its answer starts playing and playback are recorded in Metrics.
+ * Responses are recorded with the session if it is recorded.
+ */
+
+import calculatorassets.SpeechExpression;
+import metrics.Metrics;
+import tts.AudioOutput;
+import tts.TextToSpeech;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sound.sampled.AudioInputStream;
+
+public class ResponsePipeline implements AutoCloseable {
+    private static final int COMMAND_CAPACITY = 4;
+    private static final int RESPONSE_CAPACITY = 4;
+    private static final int AUDIO_CAPACITY = 2;  // Synthesized ahead of playback
+    private static final float GAIN = 0.5f;
+
+    private final TextToSpeech tts;
+    private final SessionRecorder recorder;
+    private final CalculatorSession session;
+    private final AtomicLong generation = new AtomicLong();
+    private final PipelineStage<String> commands;
+    private final PipelineStage<String> synthesis;
+    private final PipelineStage<AudioInputStream> playback;
+    private long commandGeneration;  // When the command being handled was taken, command stage thread only
+    private long commandOrigin;  // When the command being handled was submitted, command stage thread only
+
+    /** Constructor for class, starts the stage threads */
+    public ResponsePipeline(TextToSpeech tts, SpeechExpression expression) {
+        this(tts, expression, null);
+    }
+
+    /** Constructor for class recording every response, unless recorder is null */
+    ResponsePipeline(TextToSpeech tts, SpeechExpression expression, SessionRecorder recorder) {
+        this.tts = tts;
+        this.recorder = recorder;
+        this.session = new CalculatorSession(expression, this::respond);
+
+        playback = new PipelineStage<>("playback", AUDIO_CAPACITY, generation,
+                (audio, itemGeneration, origin) -> {
+                    if (itemGeneration != generation.get()) {
+                        close(audio);  // Interrupted since it was taken
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    AudioOutput.Utterance utterance = tts.play(audio, GAIN);
+                    if (itemGeneration != generation.get()) {
+                        // Interrupted between the check and play, after stopSpeaking() looked for it
+                        utterance.cancel();
+                        return;
+                    }
+                    Metrics.FIRST_AUDIO.record(start - origin);
+                    utterance.await();
+                    Metrics.PLAYBACK.recordSince(start);
+                }, ResponsePipeline::close);
+        synthesis = new PipelineStage<>("synthesis", RESPONSE_CAPACITY, generation, (text, itemGeneration, origin) -> {
+            long start = System.nanoTime();
+            AudioInputStream audio = tts.prepare(text);
+            Metrics.SYNTHESIS.recordSince(start);
+            playback.put(audio, itemGeneration, origin);
+        }, null);
+        commands = new PipelineStage<>("commands", COMMAND_CAPACITY, null, (command, itemGeneration, origin) -> {
+            commandGeneration = generation.get();  // Responses to it are only dropped by a later interrupt
+            commandOrigin = origin;
+            session.makeDecision(command);
+        }, null);
+    }
+
+    /** Queue a recognized command, blocks while the pipeline is full */
+    public void submit(String command) throws InterruptedException {
+        commands.put(command, 0, System.nanoTime());
+    }
+
+    /** Stop speaking and drop every response that hasn't been played, output is silent when this returns */
+    public void interrupt() {
+        generation.incrementAndGet();
+        synthesis.clear();
+        playback.clear();
+        tts.stopSpeaking();
+    }
+
+    /** Get the session commands are handled in */
+    public CalculatorSession getSession() {
+        return session;
+    }
+
+    /** Get timing statistics of every stage, one line per stage */
+    public String report() {
+        return commands.report() + "\n" + synthesis.report() + "\n" + playback.report();
+    }
+
+    /** Stop every stage */
+    @Override
+    public void close() {
+        commands.close();
+        synthesis.close();
+        playback.close();
+        tts.stopSpeaking();
+    }
+
+    /** Speaker of the session, runs on the command stage */
+    private void respond(String text) {
+        if (recorder != null) recorder.record(SessionRecorder.Type.RESPONSE, text);
+        try {
+            synthesis.put(text, commandGeneration, commandOrigin);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void close(AudioInputStream audio) {
+        try {
+            audio.close();  // Stops synthesis of a streamed response
+        } catch (IOException ex) {
+            // Never played anyway
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * What the calculator says for each kind of response, one set of templates per calculator mode. Regular and express
+ * mode handle commands the same way and only differ in the templates they speak with. Templates are parsed once, the
+ * "{expression}" and "{result}" placeholders are filled in with the spoken expression and result.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public final class ResponseTemplates {
+    /** Kinds of responses, errors first */
+    public enum Response {
+        INPUT_NOT_UNDERSTOOD, EXPRESSION_NOT_UNDERSTOOD, SET_NOT_UNDERSTOOD, GET_NOT_UNDERSTOOD, UNDEFINED,
+        DEGREES_SET, RADIANS_SET, EXPRESS_SET, NORMAL_SET,
+        CURRENT_DEGREES, CURRENT_RADIANS, CURRENT_CALCULATOR_MODE,
+        ANSWER, PREVIOUS_ANSWER, RESULT
+    }
+
+    static final String ANSWER_WAS = "The answer was";
+    static final String PREVIOUS_ANSWER_WAS = "The previous answer was";
+    static final String IS_EQUAL_TO = "is equal to";
+
+    public static final ResponseTemplates REGULAR = new ResponseTemplates()
+            .with(Response.INPUT_NOT_UNDERSTOOD, "Input not understood, please try again.")
+            .with(Response.EXPRESSION_NOT_UNDERSTOOD, "Calculator expression not understood, please try again.")
+            .with(Response.SET_NOT_UNDERSTOOD, "Set parameters not understood, please try again.")
+            .with(Response.GET_NOT_UNDERSTOOD, "Get parameters not understood, please try again.")
+            .with(Response.UNDEFINED, "The result of {expression} is undefined.")
+            .with(Response.DEGREES_SET, "The angle mode is now in degrees.")
+            .with(Response.RADIANS_SET, "The angle mode is now in ray dee ins.")
+            .with(Response.EXPRESS_SET, "Mode set to express.")
+            .with(Response.NORMAL_SET, "The calculator is already in normal mode.")
+            .with(Response.CURRENT_DEGREES, "The current angle mode is degrees")
+            .with(Response.CURRENT_RADIANS, "The current angle mode is ray dee ins")
+            .with(Response.CURRENT_CALCULATOR_MODE, "The calculator is currently in normal mode.")
+            .with(Response.ANSWER, ANSWER_WAS + " {result}")
+            .with(Response.PREVIOUS_ANSWER, PREVIOUS_ANSWER_WAS + " {result}")
+            .with(Response.RESULT, "The result of {expression} " + IS_EQUAL_TO + " {result}");
+
+    public static final ResponseTemplates EXPRESS = new ResponseTemplates()
+            .with(Response.INPUT_NOT_UNDERSTOOD, "Input not understood.")
+            .with(Response.EXPRESSION_NOT_UNDERSTOOD, "Parameters not understood.")
+            .with(Response.SET_NOT_UNDERSTOOD, "Parameters not understood.")
+            .with(Response.GET_NOT_UNDERSTOOD, "Parameters not understood.")
+            .with(Response.UNDEFINED, "Undefined.")
+            .with(Response.DEGREES_SET, "Mode set to degrees.")
+            .with(Response.RADIANS_SET, "Mode set to radians.")
+            .with(Response.EXPRESS_SET, "Mode is already express.")
+            .with(Response.NORMAL_SET, "The calculator is now in normal mode.")
+            .with(Response.CURRENT_DEGREES, "Degrees.")
+            .with(Response.CURRENT_RADIANS, "Ray dee ins.")
+            .with(Response.CURRENT_CALCULATOR_MODE, "Express mode.")
+            .with(Response.ANSWER, "{result}")
+            .with(Response.PREVIOUS_ANSWER, "{result}")
+            .with(Response.RESULT, "{result}");
+
+    private final Map<Response, Template> templates = new EnumMap<>(Response.class);
+
+    private ResponseTemplates() {
+    }
+
+    /** Fill in a response, expression and result are ignored if the template has no place for them */
+    public String render(Response response, String expression, String result) {
+        return templates.get(response).render(expression, result);
+    }
+
+    /** Fill in a response without placeholders */
+    public String render(Response response) {
+        return render(response, null, null);
+    }
+
+    /** Every response of either mode that doesn't depend on the expression or result, errors first */
+    static List<String> fixedResponses() {
+        Set<String> fixed = new LinkedHashSet<>();
+        for (Response response : Response.values()) {
+            for (ResponseTemplates mode : new ResponseTemplates[]{REGULAR, EXPRESS}) {
+                Template template = mode.templates.get(response);
+                if (template.isFixed()) fixed.add(template.render(null, null));
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(fixed));
+    }
+
+    private ResponseTemplates with(Response response, String template) {
+        templates.put(response, new Template(template));
+        return this;
+    }
+
+    /** A parsed template, literal text alternating with placeholders */
+    private static final class Template {
+        private static final String EXPRESSION = "{expression}";
+        private static final String RESULT = "{result}";
+
+        private final String[] literals;  // One more than there are placeholders
+        private final boolean[] isResult;  // Per placeholder, else it is the expression
+        private final int length;
+
+        private Template(String template) {
+            List<String> parts = new ArrayList<>();
+            List<Boolean> placeholders = new ArrayList<>();
+            int position = 0;
+
+            while (true) {
+                int expression = template.indexOf(EXPRESSION, position), result = template.indexOf(RESULT, position);
+                if (expression == -1 && result == -1) break;
+
+                boolean nextIsResult = expression == -1 || (result != -1 && result < expression);
+                int start = nextIsResult ? result : expression;
+                parts.add(template.substring(position, start));
+                placeholders.add(nextIsResult);
+                position = start + (nextIsResult ? RESULT : EXPRESSION).length();
+            }
+            parts.add(template.substring(position));
+
+            literals = parts.toArray(new String[0]);
+            isResult = new boolean[placeholders.size()];
+            int literalLength = 0;
+            for (int i = 0; i < isResult.length; i++) isResult[i] = placeholders.get(i);
+            for (String literal : literals) literalLength += literal.length();
+            length = literalLength;
+        }
+
+        private boolean isFixed() {
+            return isResult.length == 0;
+        }
+
+        private String render(String expression, String result) {
+            if (isFixed()) return literals[0];
+
+            StringBuilder rendered = new StringBuilder(length + 64);
+            for (int i = 0; i < isResult.length; i++) {
+                rendered.append(literals[i]).append(isResult[i] ? result : expression);
+            }
+            return rendered.append(literals[isResult.length]).toString();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Reads a log written by SessionRecorder back record by record, through its segments from the oldest one left. A
+ * record cut short at the end of a segment (the calculator was killed mid write) ends that segment.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+final class SessionLog implements AutoCloseable {
+    private final List<File> segments;
+    private final boolean twoStage;
+    private final long startMillis;
+    private int next = 0;
+    private DataInputStream in;
+
+    /** Open a log, throws IOException if it has no segments or they weren't written by SessionRecorder */
+    SessionLog(File log) throws IOException {
+        segments = segments(log);
+        if (segments.isEmpty()) throw new IOException("No session recording at " + log);
+
+        openNext();
+        twoStage = (in.readByte() & SessionRecorder.TWO_STAGE) != 0;
+        startMillis = in.readLong();
+        in.readInt();  // Sample rate, always the decoder's
+    }
+
+    /** Segment files of a log, oldest first */
+    static List<File> segments(File log) {
+        File directory = log.getAbsoluteFile().getParentFile();
+        String prefix = log.getName() + ".";
+        File[] files = directory.listFiles((parent, name) -> name.startsWith(prefix) &&
+                name.substring(prefix.length()).matches("\\d+"));
+        if (files == null) return new ArrayList<>();
+
+        List<File> segments = new ArrayList<>(Arrays.asList(files));
+        segments.sort(Comparator.comparingLong(file -> Long.parseLong(file.getName().substring(prefix.length()))));
+        return segments;
+    }
+
+    /** Segment file of a log */
+    static File segment(File log, int index) {
+        return new File(log.getPath() + "." + index);
+    }
+
+    /** Get if the session was recognized in two stages */
+    boolean isTwoStage() {
+        return twoStage;
+    }
+
+    /** Get when the recording started, in epoch milliseconds */
+    long getStartMillis() {
+        return startMillis;
+    }
+
+    /** Read the next record, null at the end of the log */
+    Record next() throws IOException {
+        while (in != null) {
+            try {
+                int type = in.read();
+                if (type != -1) {
+                    long time = in.readLong();
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    if (type >= SessionRecorder.Type.values().length) throw new IOException("Unknown record " + type);
+                    return new Record(SessionRecorder.Type.values()[type], time, data);
+                }
+            } catch (EOFException ex) {
+                // Cut short, carry on with the next segment
+            }
+
+            in.close();
+            in = null;
+            if (next < segments.size()) {
+                openNext();
+                in.skipBytes(1 + 8 + 4);  // Header after the version, same as the first segment's
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) in.close();
+        in = null;
+    }
+
+    /** Open the next segment and check its header up to the version */
+    private void openNext() throws IOException {
+        File segment = segments.get(next++);
+        InputStream stream = Files.newInputStream(segment.toPath());
+        in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+
+        if (in.readInt() != SessionRecorder.MAGIC || in.readByte() != SessionRecorder.VERSION) {
+            in.close();
+            throw new IOException(segment + " is not a session recording of this version");
+        }
+    }
+
+    /** A record */
+    static final class Record {
+        private final SessionRecorder.Type type;
+        private final long time;
+        private final byte[] data;
+
+        private Record(SessionRecorder.Type type, long time, byte[] data) {
+            this.type = type;
+            this.time = time;
+            this.data = data;
+        }
+
+        /** Get type */
+        SessionRecorder.Type getType() {
+            return type;
+        }
+
+        /** Get nanoseconds since the recording started */
+        long getTime() {
+            return time;
+        }
+
+        /** Get payload, PCM of audio records */
+        byte[] getData() {
+            return data;
+        }
+
+        /** Get text of text records */
+        String getText() {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        /** Get stage name of latency records */
+        String getStage() {
+            return new String(data, 8, data.length - 8, StandardCharsets.UTF_8);
+        }
+
+        /** Get nanoseconds of latency records */
+        long getLatency() {
+            return ByteBuffer.wrap(data).getLong();
+        }
+    }
+}
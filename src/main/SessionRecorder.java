@@ -0,0 +1,157 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Opt-in recording of a live session for SessionReplay: the microphone audio as the decoder read it, every hypothesis,
+ * every response (which carries the decision and the result) and every stage latency recorded in Metrics, each
+ * stamped with when it happened. Records are appended to a compact binary log through one buffered FileChannel, audio
+ * is buffered and everything else is flushed straight away, so a crash loses at most a buffer of audio.
+ *
+ * Disk use is bounded: the log is split into segment files (<log>.0, <log>.1, ...) of limit / SEGMENTS bytes each, and
+ * once there are more than SEGMENTS the oldest one is deleted, so the log holds the latest part of the session. Every
+ * segment starts with its own header and can be read on its own. Segments of an earlier recording to the same log are
+ * replaced.
+ *
+ * Segment: int MAGIC, byte VERSION, byte flags (TWO_STAGE), long start (epoch milliseconds), int sample rate, records
+ * Record:  byte type, long nanoseconds since the recording started, int length, length bytes of payload
+ * Payload: audio is 16 bit little endian mono PCM, text is UTF-8, a latency is a long of nanoseconds and a stage name
+ * Numbers are big endian (ByteBuffer's and DataInputStream's order).
+ */
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class SessionRecorder implements AutoCloseable, Metrics.Listener {
+    static final int MAGIC = 0x5643524c;  // "VCRL"
+    static final byte VERSION = 1;
+    static final byte TWO_STAGE = 1;
+    static final int SEGMENTS = 8;
+    static final int RECORD_HEADER_BYTES = 1 + 8 + 4;
+    static final long DEFAULT_LIMIT = 256L * 1024 * 1024;  // About 2 hours of 16 kHz 16 bit audio
+    private static final long MIN_LIMIT = SEGMENTS * 64L * 1024;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /** Kinds of records, stored as their ordinal */
+    enum Type {
+        AUDIO, WAKE, HYPOTHESIS, FAILURE, RESPONSE, LATENCY
+    }
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final File log;
+    private final long segmentLimit;
+    private final boolean twoStage;
+    private final long start = System.nanoTime();
+    private final long startMillis = System.currentTimeMillis();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private FileChannel channel;
+    private long segmentBytes;
+    private int segment = -1;
+    private boolean closed;
+
+    /** Start recording to the given log, using at most limit bytes of disk */
+    SessionRecorder(File log, long limit, boolean twoStage) throws IOException {
+        if (limit < MIN_LIMIT) throw new IllegalArgumentException("Recording limit must be at least " + MIN_LIMIT);
+        this.log = log;
+        this.segmentLimit = limit / SEGMENTS;
+        this.twoStage = twoStage;
+
+        File directory = log.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Can't create " + directory);
+        for (File old : SessionLog.segments(log)) {
+            if (!old.delete()) throw new IOException("Can't replace " + old);
+        }
+        roll();
+    }
+
+    /** Record audio read by the decoder */
+    void audio(byte[] data, int offset, int length) {
+        append(Type.AUDIO, data, offset, length, false);
+    }
+
+    /** Record a hypothesis, response or the like */
+    void record(Type type, String text) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        append(type, data, 0, data.length, true);
+    }
+
+    /** Record a stage latency, Metrics calls this for every one once the recorder is its listener */
+    @Override
+    public void recorded(LatencyHistogram histogram, long nanos) {
+        byte[] name = histogram.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[8 + name.length];
+        ByteBuffer.wrap(data).putLong(nanos).put(name);
+        append(Type.LATENCY, data, 0, data.length, true);
+    }
+
+    /** Flush and stop recording, later records are dropped. Doesn't stop Metrics from calling recorded() */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            flush();
+            channel.close();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Error closing session recording", ex);
+        }
+    }
+
+    private synchronized void append(Type type, byte[] data, int offset, int length, boolean flush) {
+        if (closed) return;
+        try {
+            if (segmentBytes + RECORD_HEADER_BYTES + length > segmentLimit) roll();
+            if (buffer.remaining() < RECORD_HEADER_BYTES + length) flush();
+
+            buffer.put((byte) type.ordinal()).putLong(System.nanoTime() - start).putInt(length);
+            if (length <= buffer.remaining()) buffer.put(data, offset, length);
+            else {
+                flush();
+                write(ByteBuffer.wrap(data, offset, length));
+            }
+            segmentBytes += RECORD_HEADER_BYTES + length;
+            if (flush) flush();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Error writing session recording, recording stopped", ex);
+            closed = true;
+        }
+    }
+
+    /** Start the next segment, deleting the oldest one if there are more than SEGMENTS */
+    private void roll() throws IOException {
+        if (channel != null) {
+            flush();
+            channel.close();
+        }
+        segment++;
+        channel = FileChannel.open(SessionLog.segment(log, segment).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (segment >= SEGMENTS) {
+            File oldest = SessionLog.segment(log, segment - SEGMENTS);
+            if (!oldest.delete()) logger.log(Level.WARNING, "Can't delete " + oldest);
+        }
+
+        buffer.putInt(MAGIC).put(VERSION).put(twoStage ? TWO_STAGE : 0).putLong(startMillis)
+                .putInt(TwoStageRecognizer.SAMPLE_RATE);
+        segmentBytes = buffer.position();
+        flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) channel.write(data);
+    }
+}
@@ -0,0 +1,278 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Replays a session recorded with VoiceCalculator --record: the recorded audio goes through the recognizer again (in
+ * two stages or not, as recorded), and every hypothesis through the decision logic of a fresh session, either as fast
+ * as the decoder goes or at the pace the live decoder read it (--realtime). What the replay hears and answers and its
+ * stage latencies are recorded into a log of their own, without the audio, and compared with the recording: which
+ * events (wakes, hypotheses, failures and responses) differ, and the recorded and replayed latencies of every stage.
+ * A slowdown reported from the field becomes a benchmark that can be rerun after every change, and two replays can be
+ * compared with --compare.
+ *
+ * Responses aren't synthesized or played, synthesis, first audio and playback latencies are only there as recorded.
+ * Wake detection and hypothesis latencies assume audio arriving in real time, so they only compare with --realtime.
+ *
+ * Usage: java main.SessionReplay [--realtime] [-g grammar directory] [-o replay log] <session log>
+ *        java main.SessionReplay --compare <other log> <session log>
+ */
+
+import calculatorassets.SpeechExpression;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+
+import edu.cmu.sphinx.api.Configuration;
+import edu.cmu.sphinx.api.SpeechResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class SessionReplay {
+    private static final int SHOWN_DIFFERENCES = 10;
+    private static final double BYTES_PER_SECOND = TwoStageRecognizer.SAMPLE_RATE * 2;
+
+    private final File log;
+    private final String grammarPath;
+    private final boolean realtime;
+
+    /** Constructor for class, realtime paces the audio the way the live decoder read it */
+    public SessionReplay(File log, String grammarPath, boolean realtime) {
+        this.log = log;
+        this.grammarPath = grammarPath;
+        this.realtime = realtime;
+    }
+
+    /** Replay the recording into replayLog, returns how long decoding took in nanoseconds */
+    public long replay(File replayLog) throws IOException {
+        try (SessionLog recording = new SessionLog(log);
+             SessionRecorder recorder = new SessionRecorder(replayLog, SessionRecorder.DEFAULT_LIMIT,
+                     recording.isTwoStage())) {
+            ReplayStream audio = new ReplayStream(recording, realtime);
+            Configuration configuration = VoiceCalculator.createConfiguration();
+            configuration.setGrammarPath(grammarPath);
+            TwoStageRecognizer recognizer = new TwoStageRecognizer(configuration, recording.isTwoStage(), audio);
+            CalculatorSession.Speaker responses = text -> recorder.record(SessionRecorder.Type.RESPONSE, text);
+            CalculatorSession session = new CalculatorSession(new SpeechExpression(
+                    VoiceCalculator.createEvaluator(grammarPath)), responses);
+
+            recognizer.startRecognition();
+            Metrics.setListener(recorder);
+            long start = System.nanoTime();
+            try {
+                boolean listeningForCommand = false;
+
+                // Same decisions as VoiceCalculator's recognizer thread
+                while (true) {
+                    SpeechResult result = recognizer.getResult();
+                    if (result == null && audio.isFinished()) break;
+                    String hypothesis = result == null ? "" : result.getHypothesis();
+
+                    if (listeningForCommand) {
+                        if (hypothesis.isEmpty()) {
+                            Metrics.RECOGNITION_FAILURES.increment();
+                            recorder.record(SessionRecorder.Type.FAILURE, "");
+                        } else {
+                            Metrics.HYPOTHESIS.record(recognizer.getResultLatency());
+                            recorder.record(SessionRecorder.Type.HYPOTHESIS, hypothesis);
+                        }
+                        if (result != null) session.makeDecision(hypothesis);
+
+                        listeningForCommand = false;
+                        recognizer.listenForWakePhrase();
+                    } else if (hypothesis.equals(VoiceCalculator.WAKE_PHRASE)) {
+                        Metrics.WAKE_DETECTION.record(recognizer.getResultLatency());
+                        recorder.record(SessionRecorder.Type.WAKE, hypothesis);
+                        recognizer.listenForCommand();
+                        listeningForCommand = true;
+                    }
+                }
+                return System.nanoTime() - start;
+            } finally {
+                Metrics.setListener(null);
+                recognizer.stopRecognition();
+            }
+        }
+    }
+
+    /** Compare the events and stage latencies of a recording and a replay (or any two logs) */
+    public static String compare(File recorded, File replayed) throws IOException {
+        Summary first = new Summary(recorded), second = new Summary(replayed);
+        StringBuilder report = new StringBuilder();
+
+        int differ = Math.abs(first.events.size() - second.events.size()), shown = 0;
+        for (int i = 0; i < Math.max(first.events.size(), second.events.size()); i++) {
+            String recordedEvent = i < first.events.size() ? first.events.get(i) : "(none)";
+            String replayedEvent = i < second.events.size() ? second.events.get(i) : "(none)";
+            if (recordedEvent.equals(replayedEvent)) continue;
+
+            if (i < first.events.size() && i < second.events.size()) differ++;
+            if (shown++ < SHOWN_DIFFERENCES)
+                report.append(String.format(Locale.ROOT, "  event %d: %s, replayed %s%n", i + 1, recordedEvent,
+                        replayedEvent));
+        }
+        report.insert(0, String.format(Locale.ROOT, "%d of %d events differ%n", differ,
+                Math.max(first.events.size(), second.events.size())));
+
+        report.append(String.format(Locale.ROOT, "%-20s %8s %10s %10s %10s %10s%n", "stage", "count",
+                "avg ms", "p90 ms", "replay avg", "replay p90"));
+        Set<String> stages = new LinkedHashSet<>(first.stages.keySet());
+        stages.addAll(second.stages.keySet());
+        for (String stage : stages) {
+            LatencyHistogram before = first.stage(stage), after = second.stage(stage);
+            report.append(String.format(Locale.ROOT, "%-20s %8d %10.1f %10.1f %10.1f %10.1f%n", stage,
+                    before.getCount(), before.getMeanMillis(), before.getPercentile90Millis(), after.getMeanMillis(),
+                    after.getPercentile90Millis()));
+        }
+        return report.toString().trim();
+    }
+
+    /* ---------------------------------------------------- Replay -------------------------------------------------- */
+
+    /** Audio of a recording, in the order and (if paced) at the pace it was read by the live decoder */
+    private static final class ReplayStream extends InputStream {
+        private final SessionLog recording;
+        private final boolean paced;
+        private byte[] audio = new byte[0];
+        private int position = 0;
+        private long firstTime = -1;
+        private long start;
+        private boolean finished;
+
+        private ReplayStream(SessionLog recording, boolean paced) {
+            this.recording = recording;
+            this.paced = paced;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            while (position == audio.length) {
+                if (!nextAudio()) return -1;
+            }
+
+            int nRead = Math.min(length, audio.length - position);
+            System.arraycopy(audio, position, buffer, offset, nRead);
+            position += nRead;
+            return nRead;
+        }
+
+        /** Get if every recorded frame has been read */
+        private boolean isFinished() {
+            return finished;
+        }
+
+        /** Move on to the next audio record, waiting until it was read live if paced. False at the end */
+        private boolean nextAudio() throws IOException {
+            SessionLog.Record record;
+            do {
+                record = recording.next();
+                if (record == null) {
+                    finished = true;
+                    return false;
+                }
+            } while (record.getType() != SessionRecorder.Type.AUDIO);
+
+            if (firstTime == -1) {
+                firstTime = record.getTime();
+                start = System.nanoTime();
+            } else if (paced) {
+                long wait = record.getTime() - firstTime - (System.nanoTime() - start);
+                try {
+                    if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted replaying", ex);
+                }
+            }
+            audio = record.getData();
+            position = 0;
+            return true;
+        }
+    }
+
+    /** Events and stage latencies of a log */
+    private static final class Summary {
+        private final List<String> events = new ArrayList<>();
+        private final Map<String, LatencyHistogram> stages = new LinkedHashMap<>();
+
+        private Summary(File log) throws IOException {
+            try (SessionLog session = new SessionLog(log)) {
+                SessionLog.Record record;
+                while ((record = session.next()) != null) {
+                    switch (record.getType()) {
+                        case AUDIO:
+                            break;
+                        case LATENCY:
+                            stage(record.getStage()).record(record.getLatency());
+                            break;
+                        default:
+                            events.add(record.getType().name().toLowerCase(Locale.ROOT) + " [" + record.getText() +
+                                    "]");
+                    }
+                }
+            }
+        }
+
+        private LatencyHistogram stage(String name) {
+            return stages.computeIfAbsent(name, LatencyHistogram::new);
+        }
+    }
+
+    /* -------------------------------------------------------------------------------------------------------------- */
+
+    /** Main method */
+    public static void main(String[] args) throws IOException {
+        boolean realtime = false;
+        String grammarPath = VoiceCalculator.GRAMMAR_PATH, output = null, other = null, log = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--realtime")) realtime = true;
+            else if ((args[i].equals("-g") || args[i].equals("--grammar")) && i + 1 < args.length)
+                grammarPath = args[++i];
+            else if ((args[i].equals("-o") || args[i].equals("--output")) && i + 1 < args.length)
+                output = args[++i];
+            else if (args[i].equals("--compare") && i + 1 < args.length) other = args[++i];
+            else log = args[i];
+        }
+        if (log == null) {
+            System.err.println("Usage: java main.SessionReplay [--realtime] [-g grammar directory] [-o replay log] " +
+                    "<session log>\n       java main.SessionReplay --compare <other log> <session log>");
+            System.exit(2);
+        }
+
+        File replayLog = new File(other != null ? other : output != null ? output : log + "-replay");
+        if (other == null) {
+            long nanos = new SessionReplay(new File(log), grammarPath, realtime).replay(replayLog);
+            double seconds = audioBytes(new File(log)) / BYTES_PER_SECOND;
+            System.err.printf(Locale.ROOT, "Replayed %.1f s of audio in %.1f s (%.2fx real time) into %s%n",
+                    seconds, nanos / 1e9, seconds * 1e9 / Math.max(1, nanos), replayLog);
+        }
+        System.out.println(compare(new File(log), replayLog));
+    }
+
+    /** Bytes of audio in a log */
+    private static long audioBytes(File log) throws IOException {
+        long bytes = 0;
+        try (SessionLog session = new SessionLog(log)) {
+            SessionLog.Record record;
+            while ((record = session.next()) != null) {
+                if (record.getType() == SessionRecorder.Type.AUDIO) bytes += record.getData().length;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,78 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Wall clock timing of startup phases. Phases may run on different threads at the same time, each records when it
+ * started relative to the profile, how long it took and which thread ran it, so the report shows what overlapped and
+ * which phase the total waited on.
+ */
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+public class StartupProfile {
+    private final long start = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+
+    /** Run and time a phase on the calling thread */
+    public void time(String name, Runnable phase) {
+        long phaseStart = System.nanoTime();
+        try {
+            phase.run();
+        } finally {
+            record(name, phaseStart);
+        }
+    }
+
+    /** Run and time a phase on the calling thread, returning its result */
+    public <T> T time(String name, Callable<T> phase) throws Exception {
+        long phaseStart = System.nanoTime();
+        try {
+            return phase.call();
+        } finally {
+            record(name, phaseStart);
+        }
+    }
+
+    /** Get nanoseconds since the profile was created */
+    public long elapsed() {
+        return System.nanoTime() - start;
+    }
+
+    /** Get a table of the phases recorded so far in order of starting, with the elapsed time up to now */
+    public synchronized String report() {
+        List<Phase> sorted = new ArrayList<>(phases);
+        sorted.sort(Comparator.comparingLong(phase -> phase.start));
+
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT, "Startup phases, %.1f ms so far:%n",
+                elapsed() / 1e6));
+        for (Phase phase : sorted) {
+            report.append(String.format(Locale.ROOT, "  %-22s %-18s %9.1f ms to %9.1f ms %9.1f ms%n", phase.name,
+                    phase.thread, phase.start / 1e6, (phase.start + phase.duration) / 1e6, phase.duration / 1e6));
+        }
+        return report.toString();
+    }
+
+    private synchronized void record(String name, long phaseStart) {
+        phases.add(new Phase(name, Thread.currentThread().getName(), phaseStart - start,
+                System.nanoTime() - phaseStart));
+    }
+
+    /** One timed phase, times in nanoseconds from the start of the profile */
+    private static final class Phase {
+        private final String name;
+        private final String thread;
+        private final long start;
+        private final long duration;
+
+        private Phase(String name, String thread, long start, long duration) {
+            this.name = name;
+            this.thread = thread;
+            this.start = start;
+            this.duration = duration;
+        }
+    }
+}
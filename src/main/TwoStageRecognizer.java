@@ -0,0 +1,213 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Live recognizer listening in two stages. While idle it decodes against the keyphrase only "wake" grammar, a search
+ * graph of a handful of states next to the thousands of the full commands grammar (which imports every expression),
+ * anything that isn't the keyphrase falls into the out of grammar branch. Once the wake phrase is heard it switches to
+ * the commands grammar for one command, then back. Sphinx4 recompiles the search graph at the start of the utterance
+ * after a switch, so switching to the commands grammar costs loading plus compiling it.
+ *
+ * In single stage mode the commands grammar (keyphrase included) is used throughout, as before, which is what the
+ * two stage mode is measured against: both keep the recognizer thread's CPU time while idle and the wake to ready
+ * latency, from listening for a command (after the acknowledgement prompt) to the decoder pulling audio again with
+ * the command grammar.
+ *
+ * The latency of every result, from the end of its last word until it is returned, is kept for Metrics. Word times are
+ * positions in the audio, and the microphone delivers audio in real time, so the audio read after the last word took
+ * as long to arrive as it lasts.
+ *
+ * Audio can come from a stream instead of the microphone (i.e. a recorded session for SessionReplay), and everything
+ * the decoder reads can be handed to a SessionRecorder.
+ */
+
+import edu.cmu.sphinx.api.AbstractSpeechRecognizer;
+import edu.cmu.sphinx.api.Configuration;
+import edu.cmu.sphinx.api.Microphone;
+import edu.cmu.sphinx.api.SpeechResult;
+import edu.cmu.sphinx.frontend.util.StreamDataSource;
+import edu.cmu.sphinx.jsgf.JSGFGrammar;
+import edu.cmu.sphinx.jsgf.JSGFGrammarException;
+import edu.cmu.sphinx.jsgf.JSGFGrammarParseException;
+import edu.cmu.sphinx.result.WordResult;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+final class TwoStageRecognizer extends AbstractSpeechRecognizer {
+    static final String WAKE_GRAMMAR = "wake";
+    static final String COMMAND_GRAMMAR = "commands";
+    static final int SAMPLE_RATE = 16000;
+    private static final int BYTES_PER_SECOND = SAMPLE_RATE * 2;  // 16 bit mono
+
+    private final boolean twoStage;
+    private final Microphone microphone;  // Null when decoding a stream
+    private final JSGFGrammar grammar;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private boolean listeningForCommand = false;
+
+    // Statistics, recognizer thread only
+    private long idleNanos = 0;
+    private long idleCpuNanos = 0;
+    private long wakes = 0;
+    private long wakeTime = -1;  // When listening for the last command started, -1 once the decoder is ready
+    private long wakeToReadyNanos = 0;
+    private long maxWakeToReadyNanos = 0;
+    private long grammarLoadNanos = 0;
+    private long audioBytes = 0;  // Read by the decoder so far
+    private long lastReadNanos = 0;
+    private long resultLatency = -1;
+    private volatile SessionRecorder recorder;
+
+    /** Constructor for class, the configuration's grammar is replaced by the one of the first stage */
+    TwoStageRecognizer(Configuration configuration, boolean twoStage) throws IOException {
+        this(configuration, twoStage, new Microphone(SAMPLE_RATE, 16, true, false), null);
+    }
+
+    /** Constructor for class decoding 16 kHz 16 bit mono PCM from a stream instead of the microphone */
+    TwoStageRecognizer(Configuration configuration, boolean twoStage, InputStream audio) throws IOException {
+        this(configuration, twoStage, null, audio);
+    }
+
+    private TwoStageRecognizer(Configuration configuration, boolean twoStage, Microphone microphone, InputStream audio)
+            throws IOException {
+        super(configure(configuration, twoStage));
+        this.twoStage = twoStage;
+        this.microphone = microphone;
+        context.getInstance(StreamDataSource.class).setInputStream(new ReadListeningStream(microphone != null ?
+                microphone.getStream() : audio));
+        grammar = context.getInstance(JSGFGrammar.class);
+    }
+
+    private static Configuration configure(Configuration configuration, boolean twoStage) {
+        configuration.setGrammarName(twoStage ? WAKE_GRAMMAR : COMMAND_GRAMMAR);
+        return configuration;
+    }
+
+    /** Allocate the models and the first stage's search graph, and start the microphone */
+    void startRecognition() {
+        recognizer.allocate();
+        if (microphone != null) microphone.startRecording();
+    }
+
+    /** Stop the microphone and free the models */
+    void stopRecognition() {
+        if (microphone != null) microphone.stopRecording();
+        recognizer.deallocate();
+    }
+
+    /** Hand everything the decoder reads from now on to a recorder, null to stop */
+    void setRecorder(SessionRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /** Decode the next utterance, blocks until one is heard */
+    @Override
+    public SpeechResult getResult() {
+        SpeechResult result;
+        if (listeningForCommand) result = super.getResult();
+        else {
+            long start = System.nanoTime(), cpuStart = threads.getCurrentThreadCpuTime();
+            result = super.getResult();
+            idleNanos += System.nanoTime() - start;
+            idleCpuNanos += threads.getCurrentThreadCpuTime() - cpuStart;
+        }
+
+        resultLatency = result == null ? -1 : latency(result);
+        return result;
+    }
+
+    /** Get nanoseconds from the end of the last result's last word until it was returned, -1 if it had no words */
+    long getResultLatency() {
+        return resultLatency;
+    }
+
+    /** The wake phrase was heard, the next utterance is decoded as a command */
+    void listenForCommand() {
+        wakeTime = System.nanoTime();
+        wakes++;
+        listeningForCommand = true;
+        if (twoStage) {
+            loadGrammar(COMMAND_GRAMMAR);
+            grammarLoadNanos += System.nanoTime() - wakeTime;
+        }
+    }
+
+    /** The command was heard, go back to waiting for the wake phrase */
+    void listenForWakePhrase() {
+        listeningForCommand = false;
+        if (twoStage) loadGrammar(WAKE_GRAMMAR);
+    }
+
+    /** Get idle CPU and wake to ready latency so far */
+    String report() {
+        return String.format(Locale.ROOT, "%s: idle %.1f s, recognizer CPU %.1f%% of a core; %d wakes, wake to " +
+                        "ready %.1f ms avg %.1f ms max (grammar loading %.1f ms avg)",
+                twoStage ? "two stage" : "single stage", idleNanos / 1e9,
+                idleNanos == 0 ? 0 : 100.0 * idleCpuNanos / idleNanos, wakes,
+                wakes == 0 ? 0 : wakeToReadyNanos / 1e6 / wakes, maxWakeToReadyNanos / 1e6,
+                wakes == 0 ? 0 : grammarLoadNanos / 1e6 / wakes);
+    }
+
+    private void loadGrammar(String name) {
+        try {
+            grammar.loadJSGF(name);  // Compiled at the start of the next utterance
+        } catch (IOException | JSGFGrammarParseException | JSGFGrammarException ex) {
+            throw new RuntimeException("Error loading grammar " + name, ex);
+        }
+    }
+
+    private long latency(SpeechResult result) {
+        List<WordResult> words = result.getResult().getTimedBestResult(false);
+        if (words.isEmpty()) return -1;
+
+        long endMillis = words.get(words.size() - 1).getTimeFrame().getEnd();
+        long readMillis = audioBytes * 1000 / BYTES_PER_SECOND;
+        return System.nanoTime() - lastReadNanos + TimeUnit.MILLISECONDS.toNanos(readMillis - endMillis);
+    }
+
+    /** Called on the first read of audio after a wake, once the search graph is compiled and decoding resumes */
+    private void ready() {
+        long latency = System.nanoTime() - wakeTime;
+        wakeToReadyNanos += latency;
+        maxWakeToReadyNanos = Math.max(maxWakeToReadyNanos, latency);
+        wakeTime = -1;
+    }
+
+    /** Audio stream telling when and how much the decoder reads from it, on the recognizer thread */
+    private final class ReadListeningStream extends FilterInputStream {
+        private ReadListeningStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (wakeTime != -1) ready();
+            int b = super.read();
+            if (b != -1) consumed(new byte[] {(byte) b}, 0, 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (wakeTime != -1) ready();
+            int nRead = super.read(buffer, offset, length);
+            if (nRead > 0) consumed(buffer, offset, nRead);
+            return nRead;
+        }
+
+        private void consumed(byte[] buffer, int offset, int length) {
+            audioBytes += length;
+            lastReadNanos = System.nanoTime();
+
+            SessionRecorder sessionRecorder = recorder;
+            if (sessionRecorder != null) sessionRecorder.audio(buffer, offset, length);
+        }
+    }
+}
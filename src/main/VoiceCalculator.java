@@ -11,7 +11,9 @@ package main;
  *
  * Calculator Information:
  * - Supports input from the positive/negative hundred billions to 10e-12 (12 decimal points)
- *   - Does not support changing float as of now
+ *   - Float is set through an evaluator's NumericContext, which also picks the numeric backend: a fast double
+ *     evaluation with tracked error bounds that falls back to exact BigDecimal arithmetic (34 significant digits) when
+ *     the rounded result could be off, or BigDecimal only
  * - Can change between degrees and radians
  * - Can get previous answer and current answer
  * - Currently does not have multiple voices, however all this requires is a compatible voice.jar file and a
@@ -20,7 +22,7 @@ package main;
  *
  * Calculator Defaults:
  * - Angle mode is in radians
- * - Float 12
+ * - Float 12, double evaluation with an exact DECIMAL128 fallback (NumericContext.DEFAULT)
  * - Regular mode
  * - cmu-rms-hsmm voice
  *
@@ -38,57 +40,182 @@ package main;
  *   - Undefined trig functions return value close to infinity instead of throwing ArithmeticException
  */
 
+import calculatorassets.ExpressionCompiler;
+import calculatorassets.ExpressionEvaluator;
+import calculatorassets.GrammarParser;
+import calculatorassets.NumberWords;
+import calculatorassets.NumericContext;
 import calculatorassets.SpeechExpression;
 
 import edu.cmu.sphinx.api.Configuration;
-import edu.cmu.sphinx.api.LiveSpeechRecognizer;
 import edu.cmu.sphinx.api.SpeechResult;
+import metrics.Metrics;
 import tts.TextToSpeech;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class VoiceCalculator {
-    private LiveSpeechRecognizer recognizer;
+    private static final String READY = "Voice calculator is ready";
+    private static final String ACKNOWLEDGE = "Yes?";
+    static final String WAKE_PHRASE = "voice calculator";
+    public static final String GRAMMAR_PATH = "resources/grammarFiles";
+    private static final int METRICS_REPORT_MINUTES = 5;
+
+    private TwoStageRecognizer recognizer;
+    private final boolean twoStage;  // Wake phrase and commands decoded with separate grammars
     private Logger logger = Logger.getLogger(getClass().getName());
     private String speechRecognitionResult;
-    private SpeechExpression expression = new SpeechExpression();
-    private TextToSpeech tts = new TextToSpeech();
-    private boolean express = false;
+    private TextToSpeech tts;  // Loaded during startup, alongside the recognizer
+    private ExpressionEvaluator evaluator;  // Parses against the grammar the recognizer decodes with
+    private ResponsePipeline pipeline;  // Handles, synthesizes and plays commands while the next one is decoded
+    private final SessionRecorder recorder;  // Null unless the session is recorded
+    private final StartupProfile profile = new StartupProfile();
 
     private boolean listenForKeyword = true;
 
     private boolean speechRecognizerThreadRunning = false;
     private ExecutorService eventsExecutorService = Executors.newFixedThreadPool(2);
 
-    /** Constructor for class */
-    private VoiceCalculator() {
+    /**
+     * Constructor for class. The recognizer and the TTS voice are loaded concurrently while the parser is warmed up on
+     * this thread, listening starts once all three are done. With startupOnly the calculator exits after startup and
+     * the background prewarming instead of listening, i.e. to record the classes loaded for a class data archive.
+     * Without twoStage the wake phrase is listened for with the full commands grammar. The session is recorded if
+     * recorder isn't null
+     */
+    private VoiceCalculator(boolean startupOnly, boolean twoStage, SessionRecorder recorder)
+            throws InterruptedException {
+        this.twoStage = twoStage;
+        this.recorder = recorder;
         logger.log(Level.INFO, "Loading Voice Calculator...\n");  // Start logging
 
-        /* Speech to Text Portion */
+        ExecutorService startupExecutorService = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "startup-" + runnable.hashCode());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Future<?> recognizerLoaded = startupExecutorService.submit(this::loadRecognizer);
+        Future<?> voiceLoaded = startupExecutorService.submit(this::loadVoice);
+        startupExecutorService.shutdown();
 
-        // Configurations
+        profile.time("parser warm-up", () -> {
+            Warmup.parser(Warmup.PARSER_ITERATIONS);
+        });
+
+        try {
+            recognizerLoaded.get();
+            voiceLoaded.get();
+        } catch (ExecutionException ex) {
+            logger.log(Level.SEVERE, "Startup failed", ex.getCause());
+            return;
+        }
+
+        Future<?> prewarmed = eventsExecutorService.submit(() -> {
+            profile.time("unit loading", () -> {
+                List<String> units = new ArrayList<>(NumberWords.VOCABULARY);
+                units.addAll(CalculatorSession.RESULT_PHRASES);
+                tts.loadUnits(units);  // Spelled out results play without synthesis from here on
+            });
+            profile.time("synthesis warm-up", () -> Warmup.synthesis(tts));
+            profile.time("response prewarming", () -> tts.prewarm(CalculatorSession.FIXED_RESPONSES));
+            logger.log(Level.INFO, profile.report());
+        });
+
+        if (startupOnly) {
+            try {
+                prewarmed.get();
+            } catch (ExecutionException ex) {
+                logger.log(Level.WARNING, "Prewarming failed", ex.getCause());
+            }
+            recognizer.stopRecognition();
+            tts.getAudioOutput().close();
+            eventsExecutorService.shutdown();
+            return;
+        }
+        pipeline = new ResponsePipeline(tts, new SpeechExpression(evaluator), recorder);
+        startMetrics();
+        startSpeechRecognition();  //Start speech recognition thread
+    }
+
+    /** Recognizer configuration, shared with FileRecognizer and the benchmarks */
+    public static Configuration createConfiguration() {
         Configuration configuration = new Configuration();
         configuration.setAcousticModelPath("resource:/edu/cmu/sphinx/models/en-us/en-us");
         configuration.setDictionaryPath("resource:/edu/cmu/sphinx/models/en-us/cmudict-en-us.dict");
-        configuration.setGrammarPath("resources/grammarFiles");
+        configuration.setGrammarPath(GRAMMAR_PATH);
         configuration.setGrammarName("commands");
         configuration.setUseGrammar(true);
+        return configuration;
+    }
+
+    /**
+     * Evaluator taking hypotheses apart by the expression grammar the recognizer decodes with, shared with
+     * FileRecognizer. Results are memoized in the shared evaluator's cache
+     */
+    static ExpressionEvaluator createEvaluator() {
+        return createEvaluator(GRAMMAR_PATH);
+    }
+
+    /** Evaluator for the expression grammar in another directory */
+    public static ExpressionEvaluator createEvaluator(String grammarPath) {
+        return new ExpressionEvaluator(ExpressionEvaluator.getShared().getResultCache(), NumericContext.DEFAULT,
+                GrammarParser.load(new File(grammarPath, "equationSyntax.gram")));
+    }
 
+    /** Load the acoustic model, dictionary and grammar */
+    private void loadRecognizer() {
+        profile.time("expression grammar", () -> {
+            evaluator = createEvaluator();
+        });
+        Configuration configuration = createConfiguration();
         try {
-            recognizer = new LiveSpeechRecognizer(configuration);
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, null, ex);
+            recognizer = profile.time("recognizer setup", () -> new TwoStageRecognizer(configuration, twoStage));
+        } catch (Exception ex) {
+            throw new RuntimeException("Error loading recognizer", ex);
         }
+        recognizer.setRecorder(recorder);
+        // Allocates the models, and starts the microphone. Anything heard until listening starts is decoded then
+        profile.time("recognizer models", () -> {
+            recognizer.startRecognition();
+        });
+    }
 
-        /* Text to Speech Portion */
-
-        tts.setVoice("cmu-rms-hsmm");
+    /** Load the TTS voice and synthesize the prompts that have to be instant */
+    private void loadVoice() {
+        profile.time("voice loading", () -> {
+            tts = new TextToSpeech();
+            tts.setVoice("cmu-rms-hsmm");
+        });
+        profile.time("audio output", () -> {
+            tts.getAudioOutput();
+        });
+        profile.time("prompt prewarming", () -> tts.prewarm(ACKNOWLEDGE, READY));  // Also JITs the synthesis path
+    }
 
-        startSpeechRecognition();  //Start speech recognition thread
+    /**
+     * Publish the metrics, cache hits included, over JMX and log a summary of them every METRICS_REPORT_MINUTES. From
+     * here on stage latencies are recorded with the session if it is recorded
+     */
+    private void startMetrics() {
+        Metrics.gauge("expression cache hits", () -> ExpressionCompiler.getCache().getHits());
+        Metrics.gauge("expression cache misses", () -> ExpressionCompiler.getCache().getMisses());
+        Metrics.gauge("result cache hits", () -> evaluator.getResultCache().getHits());
+        Metrics.gauge("result cache misses", () -> evaluator.getResultCache().getMisses());
+        Metrics.gauge("audio cache hits", () -> tts.getAudioCache().getHits());
+        Metrics.gauge("audio cache misses", () -> tts.getAudioCache().getMisses());
+        Metrics.register();
+        Metrics.startReporting(METRICS_REPORT_MINUTES, TimeUnit.MINUTES);
+        if (recorder != null) Metrics.setListener(recorder);
     }
 
     /** Starts the Speech Recognition Thread */
@@ -100,30 +227,45 @@ public class VoiceCalculator {
                 speechRecognizerThreadRunning = true;
                 listenForKeyword = true;
 
-                recognizer.startRecognition(true);
                 logger.log(Level.INFO, "Voice Calculator is ready.\n");
-                tts.speak("Voice calculator is ready");
+                logger.log(Level.INFO, profile.report());
+                tts.speak(READY);
 
                 try {
                     while (speechRecognizerThreadRunning) {
                         SpeechResult speechResult = recognizer.getResult();
 
                         if (!listenForKeyword) {
-                            if (speechResult == null)
+                            if (speechResult == null) {
+                                Metrics.RECOGNITION_FAILURES.increment();
+                                record(SessionRecorder.Type.FAILURE, "");
                                 logger.log(Level.INFO, "Speech not understood.\n");
-                            else {
+                            } else {
                                 speechRecognitionResult = speechResult.getHypothesis();
+                                if (speechRecognitionResult.isEmpty()) {
+                                    Metrics.RECOGNITION_FAILURES.increment();
+                                    record(SessionRecorder.Type.FAILURE, "");
+                                } else {
+                                    Metrics.HYPOTHESIS.record(recognizer.getResultLatency());
+                                    record(SessionRecorder.Type.HYPOTHESIS, speechRecognitionResult);
+                                }
 
                                 System.out.println("Recognized phrase: [" + speechRecognitionResult + "]\n");
 
-                                if (express) makeDecisionExpress(speechRecognitionResult);
-                                else makeDecision(speechRecognitionResult);
+                                pipeline.submit(speechRecognitionResult);
+                                logger.log(Level.FINE, "Pipeline stages:\n" + pipeline.report());
                             }
 
                             listenForKeyword = true;
+                            recognizer.listenForWakePhrase();
+                            logger.log(Level.INFO, recognizer.report());
                         } else {
-                            if (speechResult.getHypothesis().equals("voice calculator")) {
-                                tts.speak("Yes?", 2.0f, false, true);
+                            if (speechResult != null && speechResult.getHypothesis().equals(WAKE_PHRASE)) {
+                                Metrics.WAKE_DETECTION.record(recognizer.getResultLatency());
+                                record(SessionRecorder.Type.WAKE, WAKE_PHRASE);
+                                pipeline.interrupt();  // Barge-in, silent as soon as this returns
+                                tts.speak(ACKNOWLEDGE, 2.0f, false, true);
+                                recognizer.listenForCommand();  // After the prompt so it isn't decoded as the command
                                 listenForKeyword = false;
                                 logger.log(Level.INFO, "Now listening for command.");
                             }
@@ -136,211 +278,40 @@ public class VoiceCalculator {
                     speechRecognizerThreadRunning = false;
                 }
 
-                logger.log(Level.INFO, "Voice Calculator exited.");
+                pipeline.close();
+                if (recorder != null) recorder.close();
+                logger.log(Level.INFO, "Voice Calculator exited.\n" + recognizer.report() + "\n" + pipeline.report() +
+                        "\n" + Metrics.report());
             });
         }
     }
 
-    /** Do something with speech */
-    private void makeDecision(String speech) {
-        String processedCommand;
-
-        try {
-            if (commandMatches(speech, new String[]{"^(set )(the )?.*", "^(change )(the )?.*"})) {
-                processedCommand = processCommand(speech, new String[]{"^(set )(the )?", "^(change )(the )?"});
-
-                switch (processedCommand) {  // todo: test switch statement
-                    case "angle mode to degrees":
-                        expression.setIsRadian(false);
-                        tts.speak("The angle mode is now in degrees.");
-                        break;
-                    case "angle mode to ray dee ins":
-                        expression.setIsRadian(true);
-                        tts.speak("The angle mode is now in ray dee ins.");
-                        break;
-                    case "calculator mode to express":
-                        express = true;
-                        tts.speak("Mode set to express.");
-                        break;
-                    case "calculator mode to regular":
-                    case "calculator mode to normal":
-                        tts.speak("The calculator is already in normal mode.");
-                        break;
-                    default:
-                        tts.speak("Set parameters not understood, please try again.");
-                }
-            }
-            else if (commandMatches(speech, new String[]{"^(get )(the )?.*", "^(what was )(the )?.*"})) {
-                processedCommand = processCommand(speech, new String[]{"^(get the )", "^(what was the )"});
-
-                switch (processedCommand) {
-                    case "previous answer":
-                    case "previous result":
-                        tts.speak("The previous answer was " + expression.getPreviousResult());
-                        break;
-                    case "answer":
-                    case "result":
-                        tts.speak("The answer was " + expression.getResult());
-                        break;
-                    default:
-                        tts.speak("Get parameters not understood, please try again.");
-                }
-            }
-            else if (commandMatches(speech, new String[]{"^(what is ).*"})) {
-                processedCommand = processCommand(speech, new String[]{"^(what is )(the )?(current )?(value of )?"});
-
-                if (processedCommand.equals("angle mode")) {
-                    if (expression.isRad()) tts.speak("The current angle mode is ray dee ins");
-                    else tts.speak("The current angle mode is degrees");
-                }
-                else if (processedCommand.equals("calculator mode")) {
-                    tts.speak("The calculator is currently in normal mode.");
-                }
-                else {
-                    try {  // Calculate result and return to user
-                        expression.setAcousticRepresentation(processedCommand);
-                        tts.speak("The result of " + expression.getAcousticRepresentation() + " is equal to " +
-                                expression.getResult());
-                    } catch (ArithmeticException ex) {  // Divide by zero error
-                        tts.speak("The result of " + expression.getAcousticRepresentation() + " is undefined.");
-                    } catch (RuntimeException ex) {
-                        tts.speak("Calculator expression not understood, please try again.");
-                    }
-                }
-            }
-            else if (commandMatches(speech, new String[]{"^(compute )(the value of )?.*",
-                    "^(calculate )(the value of )?.*"})) {
-                processedCommand = processCommand(speech, new String[]{"^(compute )(the value of )?",
-                        "^(calculate )(the value of )?"});
-
-                try {  // Calculate result and return to user
-                    expression.setAcousticRepresentation(processedCommand);
-                    tts.speak("The result of " + expression.getAcousticRepresentation() + " is equal to " +
-                            expression.getResult());
-                } catch (ArithmeticException ex) {  // Divide by zero error
-                    tts.speak("The result of " + expression.getAcousticRepresentation() + " is undefined.");
-                } catch (RuntimeException ex) {
-                    tts.speak("Calculator expression not understood, please try again.");
-                }
-            }
-            else {
-                tts.speak("Input not understood, please try again.");
-            }
-        } catch (RuntimeException ex) {
-            tts.speak("Input not understood, please try again.");
-        }
-    }
-
-    /** Express mode output */
-    private void makeDecisionExpress(String speech) {
-        String processedCommand;
-
-        try {
-            if (commandMatches(speech, new String[]{"^(set )(the )?.*", "^(change )(the )?.*"})) {
-                processedCommand = processCommand(speech, new String[]{"^(set )(the )?", "^(change )(the )?"});
-
-                switch (processedCommand) {  // todo: test switch statement
-                    case "angle mode to degrees":
-                        expression.setIsRadian(false);
-                        tts.speak("Mode set to degrees.");
-                        break;
-                    case "angle mode to ray dee ins":
-                        expression.setIsRadian(true);
-                        tts.speak("Mode set to radians.");
-                        break;
-                    case "calculator mode to express":
-                        tts.speak("Mode is already express.");
-                        break;
-                    case "calculator mode to regular":
-                    case "calculator mode to normal":
-                        express = false;
-                        tts.speak("The calculator is now in normal mode.");
-                        break;
-                    default:
-                        tts.speak("Parameters not understood.");
-                }
-            }
-            else if (commandMatches(speech, new String[]{"^(get )(the )?.*", "^(what was )(the )?.*"})) {
-                processedCommand = processCommand(speech, new String[]{"^(get )(the )?", "^(what was )(the )?"});
-
-                switch (processedCommand) {
-                    case "previous answer":
-                    case "previous result":
-                        tts.speak(expression.getPreviousResult().toPlainString());
-                        break;
-                    case "answer":
-                    case "result":
-                        tts.speak(expression.getResult().toPlainString());
-                        break;
-                    default:
-                        tts.speak("Parameters not understood.");
-                }
-            }
-            else if (commandMatches(speech, new String[]{"^(what is ).*"})) {
-                processedCommand = processCommand(speech, new String[]{"^(what is )(the )?(current )?(value of )?"});
-
-                if (processedCommand.equals("angle mode")) {
-                    if (expression.isRad()) tts.speak("Ray dee ins.");
-                    else tts.speak("Degrees.");
-                }
-                else if (processedCommand.equals("calculator mode")) {
-                    tts.speak("Express mode.");
-                }
-                else {
-                    try {  // Calculate result and return to user
-                        expression.setAcousticRepresentation(processedCommand);
-                        tts.speak(expression.getResult().toPlainString());
-                    } catch (ArithmeticException ex) {  // Divide by zero error
-                        tts.speak("Undefined.");
-                    } catch (RuntimeException ex) {
-                        tts.speak("Parameters not understood.");
-                    }
-                }
-            }
-            else if (commandMatches(speech, new String[]{"^(compute )(the value of )?.*",
-                    "^(calculate )(the value of )?.*"})) {
-                processedCommand = processCommand(speech, new String[]{"^(compute )(the value of )?",
-                        "^(calculate )(the value of )?"});
-
-                try {  // Calculate result and return to user
-                    expression.setAcousticRepresentation(processedCommand);
-                    tts.speak(expression.getResult().toPlainString());
-                } catch (ArithmeticException ex) {  // Divide by zero error
-                    tts.speak("Undefined.");
-                } catch (RuntimeException ex) {
-                    tts.speak("Parameters not understood.");
-                }
-            }
-            else {
-                tts.speak("Input not understood.");
-            }
-        } catch (RuntimeException ex) {
-            tts.speak("Input not understood.");
-        }
+    /** Record an event of the session if it is recorded */
+    private void record(SessionRecorder.Type type, String text) {
+        if (recorder != null) recorder.record(type, text);
     }
 
-    /* ----------------------------------------- For processing commands/tts ---------------------------------------- */
-
-    /** Checks if command matches */
-    private boolean commandMatches(String command, String[] matches) {
-        for (String match : matches) {
-            if (command.matches(match)) return true;
-        }
-        return false;
-    }
+    /* -------------------------------------------------------------------------------------------------------------- */
 
-    /** Strip command with multiple matches and return stripped command or false */
-    private String processCommand(String command, String[] matches) {
-        for (String match : matches) {
-            command = command.replaceAll(match, "");
+    /**
+     * Main method, --startup-only exits after startup, --single-stage listens with the commands grammar throughout and
+     * --record <log> records the session for SessionReplay, into at most --record-limit megabytes (256 by default)
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        boolean startupOnly = false, twoStage = true;
+        String log = null;
+        long limit = SessionRecorder.DEFAULT_LIMIT;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--startup-only")) startupOnly = true;
+            else if (args[i].equals("--single-stage")) twoStage = false;
+            else if (args[i].equals("--record") && i + 1 < args.length) log = args[++i];
+            else if (args[i].equals("--record-limit") && i + 1 < args.length)
+                limit = Long.parseLong(args[++i]) * 1024 * 1024;
         }
-        return command;
-    }
-
-    /* -------------------------------------------------------------------------------------------------------------- */
 
-    /** Main method */
-    public static void main(String[] args) {
-        new VoiceCalculator();
+        SessionRecorder recorder = log == null ? null : new SessionRecorder(new File(log), limit, twoStage);
+        if (recorder != null) Runtime.getRuntime().addShutdownHook(new Thread(recorder::close, "recording-close"));
+        new VoiceCalculator(startupOnly, twoStage, recorder);
     }
 }
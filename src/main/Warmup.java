@@ -0,0 +1,80 @@
+package main;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Synthetic warm-up run during startup, so the first real command doesn't pay for class loading, interpretation and
+ * JIT compilation. The parser pass lexes, compiles, evaluates and spells out expressions covering every kind of token,
+ * bypassing the compile and result caches so the same code runs on every iteration. The synthesis pass speaks
+ * response shaped phrases through the streaming and concatenative paths without playing them.
+ */
+
+import calculatorassets.CompiledExpression;
+import calculatorassets.ExpressionCompiler;
+import calculatorassets.FormattedResult;
+import calculatorassets.NumericContext;
+import calculatorassets.SpeechLexer;
+import marytts.exceptions.SynthesisException;
+import tts.TextToSpeech;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class Warmup {
+    static final int PARSER_ITERATIONS = 5000;  // Lexer and parser methods run far more often, enough for C2
+
+    private static final String[] EXPRESSIONS = {
+            "two plus two",
+            "five hundred twenty three times negative four point two five",
+            "twelve billion three hundred million four thousand five minus answer",
+            "left parentheses three plus four right parentheses divided by seven",
+            "the square root of one hundred forty four",
+            "five fact or eel to the power of two",
+            "the sign of pi over two plus the co sign of zero",
+            "the co see can't of pi over four times the see can't of one",
+            "the tangent of one minus the co tangent of one",
+            "the natural log of e plus the log of one thousand",
+            "fifty percent times eight hundred",
+            "point oh oh five over three"
+    };
+
+    /** Responses shaped like the real ones, none of them a fixed response so the audio cache isn't skewed */
+    private static final String[] RESPONSES = {
+            "The result of seven times six is equal to forty two",
+            "The result of one over three is equal to zero point three three three three three three three three " +
+                    "three three three three"
+    };
+
+    private Warmup() {
+    }
+
+    /** Run the parser pass, returns a checksum so the work can't be optimized away */
+    static int parser(int iterations) {
+        int checksum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            CompiledExpression expression = ExpressionCompiler.compile(SpeechLexer.lex(EXPRESSIONS[i %
+                    EXPRESSIONS.length]));
+            BigDecimal value = expression.evaluate(BigDecimal.TEN, i % 2 == 0, NumericContext.DEFAULT);
+            checksum += new FormattedResult(value, NumericContext.DEFAULT.getScale()).getSpoken().length();
+        }
+        return checksum;
+    }
+
+    /** Run the synthesis pass, reading the audio as fast as it is synthesized */
+    static void synthesis(TextToSpeech tts) {
+        byte[] buffer = new byte[8192];
+
+        for (String response : RESPONSES) {
+            try (InputStream audio = tts.synthesizeStreaming(response)) {
+                while (audio.read(buffer) != -1) {
+                    // Drop it
+                }
+            } catch (SynthesisException | IOException ex) {
+                Logger.getLogger(Warmup.class.getName()).log(Level.WARNING, "Error warming up synthesis", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package metrics;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Event counter any number of threads can increment without locking or allocating.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class Counter implements CounterMBean {
+    private final String name;
+    private final AtomicLong count = new AtomicLong();
+
+    /** Constructor for class */
+    public Counter(String name) {
+        this.name = name;
+    }
+
+    /** Count an event */
+    public void increment() {
+        count.incrementAndGet();
+    }
+
+    /** Get name */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+}
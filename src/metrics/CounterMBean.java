@@ -0,0 +1,11 @@
+package metrics;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * JMX view of a Counter, or of a count kept elsewhere (Metrics.gauge), registered by Metrics.register().
+ */
+
+public interface CounterMBean {
+    /** Get the count */
+    long getCount();
+}
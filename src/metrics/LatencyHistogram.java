@@ -0,0 +1,133 @@
+package metrics;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Latency histogram any number of threads can record into without locking or allocating. Latencies go into a fixed
+ * array of log-linear buckets, SUB_BUCKETS to every power of two, so each one is known to within 1/SUB_BUCKETS of its
+ * value from nanoseconds up to centuries. Count, mean and max are exact, percentiles are the upper bound of the bucket
+ * they fall in (capped at the max). Reading walks the buckets while recording goes on, so a read may be a few
+ * recordings behind in places.
+ */
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class LatencyHistogram implements LatencyHistogramMBean {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;  // Enough for any positive long
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /** Constructor for class */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /** Record a latency, negative ones count as 0 */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets.incrementAndGet(bucket(nanos));
+        totalNanos.addAndGet(nanos);
+        count.incrementAndGet();
+
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // Raced with another recording, try again
+        }
+
+        Metrics.Listener listener = Metrics.listener;
+        if (listener != null) listener.recorded(this, nanos);
+    }
+
+    /** Record the time since start, a System.nanoTime() */
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    /** Get name */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long recorded = count.get();
+        return recorded == 0 ? 0 : totalNanos.get() / 1e6 / recorded;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    @Override
+    public double getMedianMillis() {
+        return percentile(0.5) / 1e6;
+    }
+
+    @Override
+    public double getPercentile90Millis() {
+        return percentile(0.9) / 1e6;
+    }
+
+    @Override
+    public double getPercentile99Millis() {
+        return percentile(0.99) / 1e6;
+    }
+
+    /** Forget every recording, recordings made while resetting may be partly kept */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    /** Get a line of statistics */
+    public String summary() {
+        return String.format(Locale.ROOT, "%-20s %8d recorded, %8.1f ms avg, p50 %8.1f ms, p90 %8.1f ms, " +
+                        "p99 %8.1f ms, max %8.1f ms", name, getCount(), getMeanMillis(), getMedianMillis(),
+                getPercentile90Millis(), getPercentile99Millis(), getMaxMillis());
+    }
+
+    /** Latency in nanoseconds that the given fraction of recordings are at or below, 0 if there are none */
+    public long percentile(double fraction) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += buckets.get(i);
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * total)), seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), maxNanos.get());
+        }
+        return maxNanos.get();  // Recorded into while being read
+    }
+
+    /** Index of the bucket a latency goes in, the first SUB_BUCKETS hold single values */
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    /** Largest latency going in a bucket */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * JMX view of a LatencyHistogram, registered by Metrics.register().
+ */
+
+public interface LatencyHistogramMBean {
+    /** Get how many latencies were recorded */
+    long getCount();
+
+    /** Get mean latency */
+    double getMeanMillis();
+
+    /** Get highest latency */
+    double getMaxMillis();
+
+    /** Get median latency */
+    double getMedianMillis();
+
+    /** Get 90th percentile latency */
+    double getPercentile90Millis();
+
+    /** Get 99th percentile latency */
+    double getPercentile99Millis();
+
+    /** Forget every recording */
+    void reset();
+}
@@ -0,0 +1,146 @@
+package metrics;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Registry of the latency histograms and counters along the path from a spoken command to its spoken answer, so it
+ * can be seen where the response time goes. Recording is a few atomic operations and allocates nothing, so it is
+ * always on. register() exposes everything as MBeans of the platform MBean server (domain VoiceCalculator, i.e. for
+ * JConsole) and startReporting() logs a summary periodically, front ends that want either call them at startup. A
+ * listener can be told about every latency recorded as well, i.e. to keep them with a session recording.
+ *
+ * Stages, each recorded where it happens:
+ * - wake detection: from the end of the wake phrase until it is recognized
+ * - hypothesis: from the end of a command until its hypothesis is ready
+ * - dispatch: routing a hypothesis to its command
+ * - lexing: compiling an expression, lexing or parsing it against the grammar and building its tree
+ * - evaluation: evaluating a compiled expression
+ * - synthesis: until a response's audio (the first phrase of it when streaming) is ready to play
+ * - first audio: from a hypothesis being handed to the response pipeline until its answer starts playing
+ * - playback: from an answer starting to play until it is done
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+public final class Metrics {
+    public static final String DOMAIN = "VoiceCalculator";
+
+    private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+    private static final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private static final Map<String, CounterMBean> counters = new LinkedHashMap<>();
+    private static boolean registered = false;
+    private static ScheduledExecutorService reporter;
+    static volatile Listener listener;
+
+    public static final LatencyHistogram WAKE_DETECTION = histogram("wake detection");
+    public static final LatencyHistogram HYPOTHESIS = histogram("hypothesis");
+    public static final LatencyHistogram DISPATCH = histogram("dispatch");
+    public static final LatencyHistogram LEXING = histogram("lexing");
+    public static final LatencyHistogram EVALUATION = histogram("evaluation");
+    public static final LatencyHistogram SYNTHESIS = histogram("synthesis");
+    public static final LatencyHistogram FIRST_AUDIO = histogram("first audio");
+    public static final LatencyHistogram PLAYBACK = histogram("playback");
+
+    /** Commands heard but not recognized */
+    public static final Counter RECOGNITION_FAILURES = counter("recognition failures");
+    /** Expressions recognized but not understood or not valid */
+    public static final Counter INVALID_EXPRESSIONS = counter("invalid expressions");
+
+    private Metrics() {
+    }
+
+    /** Told about every latency recorded, on the recording thread */
+    public interface Listener {
+        void recorded(LatencyHistogram histogram, long nanos);
+    }
+
+    /** Set the listener told about every latency recorded, null for none */
+    public static void setListener(Listener listener) {
+        Metrics.listener = listener;
+    }
+
+    /** Create a histogram, registered as an MBean if register() was called */
+    public static synchronized LatencyHistogram histogram(String name) {
+        if (histograms.containsKey(name)) throw new IllegalArgumentException("Duplicate histogram " + name);
+        LatencyHistogram histogram = new LatencyHistogram(name);
+        histograms.put(name, histogram);
+        if (registered) register("Latency", name, histogram, LatencyHistogramMBean.class);
+        return histogram;
+    }
+
+    /** Create a counter, registered as an MBean if register() was called */
+    public static synchronized Counter counter(String name) {
+        Counter counter = new Counter(name);
+        addCounter(name, counter);
+        return counter;
+    }
+
+    /** Publish a count kept elsewhere (i.e. a cache's hits) like a counter */
+    public static synchronized void gauge(String name, LongSupplier count) {
+        addCounter(name, count::getAsLong);
+    }
+
+    /** Register every histogram and counter, and any made later, with the platform MBean server */
+    public static synchronized void register() {
+        if (registered) return;
+        registered = true;
+
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+            register("Latency", entry.getKey(), entry.getValue(), LatencyHistogramMBean.class);
+        for (Map.Entry<String, CounterMBean> entry : counters.entrySet())
+            register("Counter", entry.getKey(), entry.getValue(), CounterMBean.class);
+    }
+
+    /** Log report() at INFO every period on a daemon thread, restarting reporting if it was started before */
+    public static synchronized void startReporting(long period, TimeUnit unit) {
+        if (reporter != null) reporter.shutdownNow();
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> logger.log(Level.INFO, "Metrics:\n" + report()), period, period, unit);
+    }
+
+    /** Get a line of statistics for every histogram, and a line of every count */
+    public static synchronized String report() {
+        StringBuilder report = new StringBuilder();
+        for (LatencyHistogram histogram : histograms.values()) report.append(histogram.summary()).append('\n');
+
+        List<String> counts = new ArrayList<>(counters.size());
+        for (Map.Entry<String, CounterMBean> entry : counters.entrySet())
+            counts.add(entry.getKey() + " " + entry.getValue().getCount());
+        return report.append(String.join(", ", counts)).toString();
+    }
+
+    private static void addCounter(String name, CounterMBean counter) {
+        if (counters.containsKey(name)) throw new IllegalArgumentException("Duplicate counter " + name);
+        counters.put(name, counter);
+        if (registered) register("Counter", name, counter, CounterMBean.class);
+    }
+
+    private static <T> void register(String type, String name, T metric, Class<T> view) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + name);
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);  // From another class loader
+            server.registerMBean(new StandardMBean(metric, view), objectName);
+        } catch (JMException ex) {
+            logger.log(Level.WARNING, "Error registering " + name, ex);
+        }
+    }
+}
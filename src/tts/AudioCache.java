@@ -0,0 +1,108 @@
+package tts;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Least recently used cache of synthesized speech keyed by text, voice and audio effects, bounded by the total size
+ * of the PCM it holds. Fixed prompts are put in ahead of time so they play without any synthesis latency.
+ */
+
+public class AudioCache {
+    private final long maxBytes;
+    private final LinkedHashMap<Key, CachedAudio> clips = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    /** Construct a cache holding at most maxBytes of PCM */
+    public AudioCache(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("Size can't be negative");
+        this.maxBytes = maxBytes;
+    }
+
+    /** Get cached audio, null if it isn't cached */
+    public synchronized CachedAudio get(String text, String voice, String effects) {
+        CachedAudio audio = clips.get(new Key(text, voice, effects));
+
+        if (audio == null) misses++;
+        else hits++;
+        return audio;
+    }
+
+    /** Cache audio, evicting the least recently used clips until it fits. Clips larger than the cache are ignored */
+    public synchronized void put(String text, String voice, String effects, CachedAudio audio) {
+        if (audio.size() > maxBytes) return;
+
+        CachedAudio replaced = clips.put(new Key(text, voice, effects), audio);
+        if (replaced != null) bytes -= replaced.size();
+        bytes += audio.size();
+
+        Iterator<Map.Entry<Key, CachedAudio>> eldest = clips.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getValue().size();
+            eldest.remove();
+        }
+    }
+
+    /** Remove every clip */
+    public synchronized void clear() {
+        clips.clear();
+        bytes = 0;
+    }
+
+    /** Get number of clips currently held */
+    public synchronized int size() {
+        return clips.size();
+    }
+
+    /** Get bytes of PCM currently held */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /** Get maximum bytes of PCM held */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** Get number of lookups answered from the cache */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** Get number of lookups that had to be synthesized */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** Cache key */
+    private static final class Key {
+        private final String text;
+        private final String voice;
+        private final String effects;
+        private final int hash;
+
+        private Key(String text, String voice, String effects) {
+            this.text = text;
+            this.voice = voice == null ? "" : voice;
+            this.effects = effects == null ? "" : effects;
+            this.hash = 31 * (31 * text.hashCode() + this.voice.hashCode()) + this.effects.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return text.equals(other.text) && voice.equals(other.voice) && effects.equals(other.effects);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package tts;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.FloatControl;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Long lived playback service replacing a new AudioPlayer thread and SourceDataLine per utterance. One line is opened
+ * in a fixed format when the service starts and stays open, utterances are queued and written to it by a single
+ * playback thread through one reused buffer. Cached audio already in the line's format is written straight from its
+ * PCM array, anything else is converted while it is read.
+ *
+ * Barge-in: audio is written in QUANTUM_MILLIS quanta into a line buffer of BUFFERED_QUANTA quanta, so the playback
+ * thread never blocks for long and sees a cancellation within one quantum. Cancelling doesn't wait for it though, the
+ * cancelling thread stops and flushes the line itself so output goes silent straight away. The playback thread flushes
+ * again once it notices, dropping anything it wrote in between, and restarts the line for the next utterance.
+ *
+ * If no line can be opened (i.e. on a headless machine) utterances are dropped and complete immediately.
+ */
+
+public class AudioOutput implements AutoCloseable {
+    public static final AudioFormat DEFAULT_FORMAT = new AudioFormat(16000f, 16, 1, true, false);  // MaryTTS voices
+    public static final int QUANTUM_MILLIS = 10;  // Audio written to the line at a time
+    private static final int BUFFERED_QUANTA = 8;  // Size of the line's buffer
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final AudioFormat format;
+    private final int quantumBytes;
+    private final byte[] buffer;
+    private final BlockingQueue<Utterance> queue = new LinkedBlockingQueue<>();
+    private final AtomicReference<Utterance> current = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();  // Raised by stop(), older utterances are dropped
+    private final Thread thread;
+    private volatile SourceDataLine line;
+    private volatile boolean closed;
+
+    /** Construct a service playing in DEFAULT_FORMAT on the system's default line */
+    public AudioOutput() {
+        this(null, DEFAULT_FORMAT);
+    }
+
+    /** Construct a service playing in the given format on the system's default line */
+    public AudioOutput(AudioFormat format) {
+        this(null, format);
+    }
+
+    /** Construct a service playing on the given line in the given format, the line is opened by the service */
+    public AudioOutput(SourceDataLine line, AudioFormat format) {
+        this.line = line;
+        this.format = format;
+        int frameSize = Math.max(1, format.getFrameSize());
+        int frames = Math.max(1, (int) (format.getFrameRate() * QUANTUM_MILLIS / 1000));
+        quantumBytes = frames * frameSize;
+        buffer = new byte[quantumBytes];
+
+        thread = new Thread(this::run, "audio-output");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Queue cached audio for playback, gain between 0.0 and 1.0 */
+    public Utterance play(CachedAudio audio, float gain) {
+        return enqueue(new Utterance(this, audio, null, gain, generation.get()));
+    }
+
+    /** Queue a stream for playback, gain between 0.0 and 1.0. The stream is closed once it has been played */
+    public Utterance play(AudioInputStream audio, float gain) {
+        return enqueue(new Utterance(this, null, audio, gain, generation.get()));
+    }
+
+    /** Cancel the utterance playing and every queued one, output is silent when this returns */
+    public void stop() {
+        generation.incrementAndGet();
+
+        Utterance utterance;
+        while ((utterance = queue.poll()) != null) utterance.finish(true);
+        utterance = current.get();
+        if (utterance != null) utterance.cancel();
+        else silence();
+    }
+
+    /** Stop playback and close the line */
+    @Override
+    public void close() {
+        closed = true;
+        stop();
+        thread.interrupt();
+    }
+
+    /** Get the line's format */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    private Utterance enqueue(Utterance utterance) {
+        if (closed) utterance.finish(true);
+        else queue.add(utterance);
+        return utterance;
+    }
+
+    /** Stop the line and discard what it has buffered */
+    private void silence() {
+        SourceDataLine openLine = line;
+        if (openLine != null && openLine.isOpen()) {
+            openLine.stop();
+            openLine.flush();
+        }
+    }
+
+    /* ----------------------------------------------- Playback thread ---------------------------------------------- */
+
+    private void run() {
+        try {
+            SourceDataLine openLine = line != null ? line : AudioSystem.getSourceDataLine(format);
+            openLine.open(format, quantumBytes * BUFFERED_QUANTA);
+            line = openLine;
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException ex) {
+            logger.log(Level.WARNING, "No audio output, utterances will be dropped", ex);
+            line = null;
+        }
+
+        try {
+            while (!closed) {
+                Utterance utterance = queue.take();
+
+                // Checked once current is set: stop() raises the generation before it looks at current, so either it
+                // cancels this utterance or its new generation is seen here
+                current.set(utterance);
+                if (utterance.generation < generation.get()) utterance.cancelled = true;
+                try {
+                    if (line != null && !utterance.isCancelled()) write(utterance);
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, "Error playing utterance", ex);
+                } finally {
+                    current.set(null);
+                    if (utterance.isCancelled()) silence();  // Drop anything written after the cancellation
+                    utterance.finish(false);
+                }
+            }
+        } catch (InterruptedException ex) {
+            // Closed
+        } finally {
+            if (line != null) line.close();
+        }
+    }
+
+    /** Write one utterance to the line a quantum at a time and wait for it to be played */
+    private void write(Utterance utterance) throws IOException {
+        SourceDataLine openLine = line;
+        setGain(openLine, utterance.gain);
+        openLine.start();
+
+        if (utterance.clip != null && utterance.clip.getFormat().matches(format)) {
+            byte[] pcm = utterance.clip.getPcm();
+            int length = pcm.length - pcm.length % Math.max(1, format.getFrameSize());
+
+            for (int offset = 0; offset < length && !utterance.isCancelled(); offset += quantumBytes)
+                openLine.write(pcm, offset, Math.min(quantumBytes, length - offset));
+        } else {
+            AudioInputStream stream = utterance.clip != null ? utterance.clip.getStream() : utterance.stream;
+            try (AudioInputStream converted = stream.getFormat().matches(format) ? stream :
+                    AudioSystem.getAudioInputStream(format, stream)) {
+                int frameSize = Math.max(1, format.getFrameSize()), pending = 0, nRead;
+
+                while (!utterance.isCancelled() &&
+                        (nRead = converted.read(buffer, pending, buffer.length - pending)) != -1) {
+                    pending += nRead;
+                    int whole = pending - pending % frameSize;  // Lines only take whole frames
+                    openLine.write(buffer, 0, whole);
+                    System.arraycopy(buffer, whole, buffer, 0, pending - whole);
+                    pending -= whole;
+                }
+            }
+        }
+
+        if (!utterance.isCancelled()) openLine.drain();
+    }
+
+    /** Set the line's gain, 0.0 to 1.0 */
+    private static void setGain(SourceDataLine line, float gain) {
+        if (line.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
+            FloatControl control = (FloatControl) line.getControl(FloatControl.Type.MASTER_GAIN);
+            float decibels = (float) (20 * Math.log10(gain <= 0.0 ? 0.0000 : gain));
+            control.setValue(Math.max(control.getMinimum(), Math.min(control.getMaximum(), decibels)));
+        }
+    }
+
+    /* -------------------------------------------------------------------------------------------------------------- */
+
+    /** A queued utterance */
+    public static final class Utterance {
+        private final AudioOutput output;
+        private final CachedAudio clip;
+        private final AudioInputStream stream;
+        private final float gain;
+        private final long generation;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean cancelled;
+
+        private Utterance(AudioOutput output, CachedAudio clip, AudioInputStream stream, float gain, long generation) {
+            this.output = output;
+            this.clip = clip;
+            this.stream = stream;
+            this.gain = gain;
+            this.generation = generation;
+        }
+
+        /** Stop playing this utterance, or drop it if it hasn't started. Output is silent when this returns */
+        public void cancel() {
+            cancelled = true;
+            if (output.current.get() == this) output.silence();
+        }
+
+        /** Get if the utterance was cancelled */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** Get if the utterance has been played or dropped */
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /** Wait until the utterance has been played or dropped */
+        public void await() throws InterruptedException {
+            done.await();
+        }
+
+        private void finish(boolean cancel) {
+            if (cancel) cancelled = true;
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ex) {
+                    // Nothing reads it anymore
+                }
+            }
+            done.countDown();
+        }
+    }
+}
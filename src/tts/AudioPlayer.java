@@ -35,8 +35,8 @@ public class AudioPlayer extends Thread {
     private SourceDataLine line;
     private int outputMode;
 
-    private Status status = Status.WAITING;
-    private boolean exitRequested = false;
+    private volatile Status status = Status.WAITING;
+    private volatile boolean exitRequested = false;
     private float gain = 1.0f;
 
     /** Holds status of player */
@@ -104,8 +104,11 @@ public class AudioPlayer extends Thread {
 
     /** Cancel and exit AudioPlayer thread */
     public void cancel() {
-        if (line != null) line.stop();
         exitRequested = true;
+        if (line != null) {
+            line.stop();
+            line.flush();
+        }
     }
 
     /** Return SourceDataLine */
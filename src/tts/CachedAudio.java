@@ -0,0 +1,56 @@
+package tts;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Synthesized speech held in memory as raw PCM, can be played any number of times without synthesizing it again.
+ */
+
+public final class CachedAudio {
+    private final AudioFormat format;
+    private final byte[] pcm;
+
+    /** Constructor for class, pcm must not be changed afterwards */
+    public CachedAudio(AudioFormat format, byte[] pcm) {
+        this.format = format;
+        this.pcm = pcm;
+    }
+
+    /** Read a stream to its end */
+    public static CachedAudio read(AudioInputStream audio) throws IOException {
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream(audio.getFrameLength() > 0 ?
+                (int) Math.min(Integer.MAX_VALUE - 8, audio.getFrameLength() * audio.getFormat().getFrameSize()) :
+                32768);
+        byte[] buffer = new byte[8192];
+        int nRead;
+
+        while ((nRead = audio.read(buffer, 0, buffer.length)) != -1) pcm.write(buffer, 0, nRead);
+        return new CachedAudio(audio.getFormat(), pcm.toByteArray());
+    }
+
+    /** Get a new stream over the audio, nothing is copied */
+    public AudioInputStream getStream() {
+        return new AudioInputStream(new ByteArrayInputStream(pcm), format, pcm.length / format.getFrameSize());
+    }
+
+    /** Get format */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /** Get raw PCM, must not be changed */
+    public byte[] getPcm() {
+        return pcm;
+    }
+
+    /** Get size in bytes */
+    public int size() {
+        return pcm.length;
+    }
+}
@@ -0,0 +1,155 @@
+package tts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.sound.sampled.AudioFormat;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Speaks phrases made up entirely of known units (number words, fixed sentence openings) by stitching together PCM
+ * synthesized for each unit ahead of time, without running MaryTTS. Units have their silence trimmed when added and
+ * neighbouring units are cross-faded so the joins don't click. Phrases with any unknown word aren't handled, the
+ * caller synthesizes those as usual.
+ *
+ * Only 16 bit signed PCM is supported, which is what MaryTTS voices produce.
+ */
+
+public class ConcatenativeSpeech {
+    private static final int SILENCE_THRESHOLD = 328;  // About 1% of full scale
+    private static final int PAD_MILLIS = 20;  // Silence kept around each unit so words don't run into each other
+
+    private final Map<String, short[]> units = new HashMap<>();
+    private final int crossFadeMillis;
+    private AudioFormat format;
+    private int crossFadeSamples;
+    private int padSamples;
+    private int maxUnitWords;
+
+    /** Constructor for class */
+    public ConcatenativeSpeech(int crossFadeMillis) {
+        this.crossFadeMillis = crossFadeMillis;
+    }
+
+    /** Add the audio for a unit of one or more words, every unit must have the same format */
+    public synchronized void addUnit(String phrase, CachedAudio audio) {
+        AudioFormat unitFormat = audio.getFormat();
+        if (!isSupported(unitFormat))
+            throw new IllegalArgumentException("Only mono 16 bit signed PCM is supported, not " + unitFormat);
+        if (format == null) {
+            format = unitFormat;
+            crossFadeSamples = (int) (format.getSampleRate() * crossFadeMillis / 1000);
+            padSamples = (int) (format.getSampleRate() * PAD_MILLIS / 1000);
+        } else if (!format.matches(unitFormat)) {
+            throw new IllegalArgumentException("Unit format " + unitFormat + " doesn't match " + format);
+        }
+
+        String[] words = split(phrase);
+        units.put(String.join(" ", words), trim(decode(audio.getPcm(), format.isBigEndian())));
+        maxUnitWords = Math.max(maxUnitWords, words.length);
+    }
+
+    /** Check if every word of text is covered by units */
+    public synchronized boolean canSay(String text) {
+        return match(split(text)) != null;
+    }
+
+    /** Stitch the units for text together, null if some word isn't covered by a unit */
+    public synchronized CachedAudio say(String text) {
+        short[][] matched = match(split(text));
+        if (matched == null) return null;
+
+        int length = 0;
+        for (short[] unit : matched) length += unit.length;
+
+        short[] samples = new short[length];
+        int position = 0;
+        for (short[] unit : matched) position = append(samples, position, unit);
+        return new CachedAudio(format, encode(Arrays.copyOf(samples, position), format.isBigEndian()));
+    }
+
+    /** Get number of units */
+    public synchronized int size() {
+        return units.size();
+    }
+
+    /* --------------------------------------------- Matching and joining ------------------------------------------- */
+
+    /** Longest match of the words against the units, null if some word isn't covered */
+    private short[][] match(String[] words) {
+        if (words.length == 0 || units.isEmpty()) return null;
+
+        short[][] matched = new short[words.length][];
+        int count = 0;
+        for (int i = 0; i < words.length; ) {
+            short[] unit = null;
+            int length = Math.min(maxUnitWords, words.length - i);
+
+            for (; length > 0 && unit == null; length--) {
+                unit = units.get(length == 1 ? words[i] : String.join(" ", Arrays.copyOfRange(words, i, i + length)));
+                if (unit != null) i += length;
+            }
+            if (unit == null) return null;
+            matched[count++] = unit;
+        }
+        return Arrays.copyOf(matched, count);
+    }
+
+    /** Append a unit, cross-fading it into the end of what is already there. Returns the new end */
+    private int append(short[] samples, int position, short[] unit) {
+        int overlap = position == 0 ? 0 : Math.min(Math.min(crossFadeSamples, unit.length), position);
+        int start = position - overlap;
+
+        for (int i = 0; i < overlap; i++) {
+            float fade = (float) (i + 1) / (overlap + 1);
+            samples[start + i] = (short) Math.round(samples[start + i] * (1 - fade) + unit[i] * fade);
+        }
+        System.arraycopy(unit, overlap, samples, position, unit.length - overlap);
+        return position + unit.length - overlap;
+    }
+
+    /** Drop leading and trailing silence, keeping PAD_MILLIS of it */
+    private short[] trim(short[] samples) {
+        int first = 0, last = samples.length - 1;
+        while (first < samples.length && Math.abs(samples[first]) < SILENCE_THRESHOLD) first++;
+        while (last > first && Math.abs(samples[last]) < SILENCE_THRESHOLD) last--;
+        if (first >= samples.length) return new short[0];
+
+        first = Math.max(0, first - padSamples);
+        last = Math.min(samples.length - 1, last + padSamples);
+        return Arrays.copyOfRange(samples, first, last + 1);
+    }
+
+    /* -------------------------------------------------------------------------------------------------------------- */
+
+    private static boolean isSupported(AudioFormat format) {
+        return format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) && format.getSampleSizeInBits() == 16 &&
+                format.getChannels() == 1;
+    }
+
+    private static String[] split(String text) {
+        String normalized = text.toLowerCase(Locale.ROOT).replaceAll("[^a-z' ]", " ").trim();
+        return normalized.isEmpty() ? new String[0] : normalized.split(" +");
+    }
+
+    private static short[] decode(byte[] pcm, boolean bigEndian) {
+        short[] samples = new short[pcm.length / 2];
+        for (int i = 0; i < samples.length; i++) {
+            int high = bigEndian ? pcm[2 * i] : pcm[2 * i + 1];
+            int low = (bigEndian ? pcm[2 * i + 1] : pcm[2 * i]) & 0xff;
+            samples[i] = (short) (high << 8 | low);
+        }
+        return samples;
+    }
+
+    private static byte[] encode(short[] samples, boolean bigEndian) {
+        byte[] pcm = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            pcm[2 * i + (bigEndian ? 0 : 1)] = (byte) (samples[i] >> 8);
+            pcm[2 * i + (bigEndian ? 1 : 0)] = (byte) samples[i];
+        }
+        return pcm;
+    }
+}
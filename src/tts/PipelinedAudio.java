@@ -0,0 +1,98 @@
+package tts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * One continuous PCM stream over phrases that are still being synthesized. Each phrase is a future completed by the
+ * synthesis thread in order, reading blocks only when playback catches up with synthesis, so phrase N plays while
+ * phrase N + 1 is synthesized. The stream is kept in a set of live streams until it has been read to the end or
+ * cancelled, so every synthesis still running can be stopped at once.
+ */
+
+class PipelinedAudio extends InputStream {
+    private final List<Future<CachedAudio>> phrases;
+    private final Set<PipelinedAudio> live;
+    private int phrase;  // Phrase being read
+    private byte[] pcm;  // Its audio, null until it has been waited for
+    private int position;
+    private volatile boolean cancelled;
+
+    /** Constructor for class, phrases must all have the same format. Adds the stream to live */
+    PipelinedAudio(List<Future<CachedAudio>> phrases, Set<PipelinedAudio> live) {
+        this.phrases = phrases;
+        this.live = live;
+        live.add(this);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+
+        while (!cancelled && phrase < phrases.size()) {
+            if (pcm == null) {
+                CachedAudio audio = await(phrases.get(phrase));
+                if (audio == null) break;  // Cancelled
+                pcm = audio.getPcm();
+            }
+
+            if (position < pcm.length) {
+                int nRead = Math.min(length, pcm.length - position);
+                System.arraycopy(pcm, position, buffer, offset, nRead);
+                position += nRead;
+                return nRead;
+            }
+            phrase++;
+            pcm = null;
+            position = 0;
+        }
+        live.remove(this);
+        return -1;
+    }
+
+    @Override
+    public int available() {
+        return pcm == null ? 0 : pcm.length - position;
+    }
+
+    /** Closing cancels, so a response dropped before it is played doesn't keep the synthesis thread busy */
+    @Override
+    public void close() {
+        cancel();
+    }
+
+    /** Stop reading and drop phrases that haven't been synthesized yet */
+    void cancel() {
+        cancelled = true;
+        for (Future<CachedAudio> future : phrases) future.cancel(false);
+        live.remove(this);
+    }
+
+    /** Wait for a phrase to be synthesized, null if it was cancelled */
+    private CachedAudio await(Future<CachedAudio> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for synthesis");
+        } catch (CancellationException ex) {
+            cancelled = true;
+            return null;
+        } catch (ExecutionException ex) {
+            throw new IOException("Error synthesizing phrase", ex.getCause());
+        }
+    }
+}
@@ -3,14 +3,24 @@ package tts;
 import java.io.File;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
 
 import marytts.LocalMaryInterface;
 import marytts.MaryInterface;
@@ -26,11 +36,37 @@ import marytts.signalproc.effects.AudioEffects;
  * Copyright 2017 goxr3plus
  *
  * Original code commenting changed, added an overloaded speak method for ease of use
+ *
+ * Synthesized audio is kept in an AudioCache keyed by text, voice and effects, so fixed prompts are only synthesized
+ * once and can be prewarmed before they are first needed. Phrases made up only of loaded units (i.e. spelled out
+ * numbers) are stitched together from the units' audio instead of being synthesized.
+ *
+ * In streaming mode (the default) responses are split at phrase boundaries and played as one continuous stream while
+ * the later phrases are still being synthesized, so playback starts once the first phrase is ready.
+ *
+ * Playback goes through one long lived AudioOutput instead of a new AudioPlayer per utterance.
  */
 
 public class TextToSpeech {
-    private AudioPlayer tts;
+    public static final long DEFAULT_CACHE_BYTES = 16L * 1024 * 1024;  // About 8 minutes of 16 kHz 16 bit speech
+    private static final int CROSS_FADE_MILLIS = 10;
+    private static final Pattern PHRASE_BOUNDARY =
+            Pattern.compile("(?<=[.,;:!?])\\s+|\\s+(?=is (equal to|undefined)\\b)");
+
+    private final Object outputLock = new Object();
+    private AudioOutput output;
+    private volatile AudioOutput.Utterance playing;
     private MaryInterface marytts;
+    private AudioCache audioCache = new AudioCache(DEFAULT_CACHE_BYTES);
+    private volatile ConcatenativeSpeech units;
+    private final ExecutorService synthesisExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tts-synthesis");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<PipelinedAudio> streamingAudio = ConcurrentHashMap.newKeySet();  // Still synthesizing
+    private boolean streaming = true;
+    private volatile long timeToFirstAudio;  // Nanoseconds, of the last spoken response
     private File log = new File("log/server.log");
 
     /** Constructor */
@@ -47,57 +83,167 @@ public class TextToSpeech {
         }
     }
 
-    /** Text to Speech */
+    /** Text to Speech, playback always runs on the audio output's daemon thread whatever daemon is */
     public void speak(String text, float gainValue, boolean daemon, boolean join) {
-        // Stop the previous player
+        // Stop the previous utterance
         stopSpeaking();
 
-        try (AudioInputStream audio = marytts.generateAudio(text)) {
-            // Player has to be initialized every time
-            tts = new AudioPlayer();
-            tts.setAudio(audio);
-            tts.setGain(gainValue);
-            tts.setDaemon(daemon);
-            tts.start();
-            if (join) tts.join();
+        long start = System.nanoTime();
+        AudioOutput.Utterance utterance = null;
+        try {
+            AudioOutput output = getAudioOutput();
+            if (streaming && PHRASE_BOUNDARY.split(text.trim()).length > 1)
+                utterance = output.play(synthesizeStreaming(text), gainValue);
+            else
+                utterance = output.play(getAudio(text), gainValue);
+            timeToFirstAudio = System.nanoTime() - start;
+
+            playing = utterance;
+            if (join) utterance.await();
         } catch (SynthesisException ex) {
             Logger.getLogger(getClass().getName()).log(Level.WARNING, "Error saying phrase", ex);
         } catch (IOException ex) {
             Logger.getLogger(getClass().getName()).log(Level.WARNING, "IO Exception", ex);
         } catch (InterruptedException ex) {
             Logger.getLogger(getClass().getName()).log(Level.WARNING, "Interrupted", ex);
-            tts.interrupt();
+            utterance.cancel();
         }
     }
 
     /** Overloaded Text to Speech */
     public void speak(String text) {
-        // Stop the previous player
-        stopSpeaking();
+        speak(text, 0.5f, false, true);
+    }
 
-        try (AudioInputStream audio = marytts.generateAudio(text)) {
-            // Player has to be initialized every time
-            tts = new AudioPlayer();
-            tts.setAudio(audio);
-            tts.setGain(0.5f);
-            tts.setDaemon(false);
-            tts.start();
-            tts.join();
-        } catch (SynthesisException ex) {
-            Logger.getLogger(getClass().getName()).log(Level.WARNING, "Error saying phrase", ex);
-        } catch (IOException ex) {
-            Logger.getLogger(getClass().getName()).log(Level.WARNING, "IO Exception", ex);
+    /**
+     * Synthesize text for later playback the way speak would, phrase by phrase in streaming mode. Closing the stream
+     * stops synthesis of phrases that haven't been synthesized yet
+     */
+    public AudioInputStream prepare(String text) throws SynthesisException, IOException {
+        if (streaming && PHRASE_BOUNDARY.split(text.trim()).length > 1) return synthesizeStreaming(text);
+        return synthesize(text);
+    }
+
+    /** Play prepared audio after anything already queued, stopSpeaking stops it like a spoken response */
+    public AudioOutput.Utterance play(AudioInputStream audio, float gainValue) {
+        AudioOutput.Utterance utterance = getAudioOutput().play(audio, gainValue);
+        playing = utterance;
+        return utterance;
+    }
+
+    /** Synthesize text without playing it, cached audio is used when there is some */
+    public AudioInputStream synthesize(String text) throws SynthesisException, IOException {
+        return getAudio(text).getStream();
+    }
+
+    /**
+     * Synthesize text phrase by phrase on the synthesis thread, returning as soon as the first phrase is ready. The
+     * stream blocks when it catches up with synthesis
+     */
+    public AudioInputStream synthesizeStreaming(String text) throws SynthesisException, IOException {
+        String[] phrases = PHRASE_BOUNDARY.split(text.trim());
+        if (phrases.length <= 1) return synthesize(text);
+
+        List<Future<CachedAudio>> futures = new ArrayList<>(phrases.length);
+        for (String phrase : phrases) futures.add(synthesisExecutor.submit(() -> getAudio(phrase)));
+
+        CachedAudio first;
+        try {
+            first = futures.get(0).get();
         } catch (InterruptedException ex) {
-            Logger.getLogger(getClass().getName()).log(Level.WARNING, "Interrupted", ex);
-            tts.interrupt();
+            for (Future<CachedAudio> future : futures) future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for synthesis", ex);
+        } catch (ExecutionException ex) {
+            for (Future<CachedAudio> future : futures) future.cancel(false);
+            if (ex.getCause() instanceof SynthesisException) throw (SynthesisException) ex.getCause();
+            throw new IOException("Error synthesizing phrase", ex.getCause());
+        }
+
+        PipelinedAudio audio = new PipelinedAudio(futures, streamingAudio);
+        return new AudioInputStream(audio, first.getFormat(), AudioSystem.NOT_SPECIFIED);
+    }
+
+    /** Synthesize each text into the cache ahead of time so it plays without synthesis latency */
+    public void prewarm(Collection<String> texts) {
+        for (String text : texts) {
+            try {
+                getAudio(text);
+            } catch (SynthesisException | IOException ex) {
+                Logger.getLogger(getClass().getName()).log(Level.WARNING, "Error prewarming phrase", ex);
+            }
+        }
+    }
+
+    /** Overloaded prewarm */
+    public void prewarm(String... texts) {
+        prewarm(Arrays.asList(texts));
+    }
+
+    /**
+     * Synthesize each phrase on its own as a unit for concatenation, phrases made up only of units are then spoken
+     * without MaryTTS. Units are dropped when the voice changes
+     */
+    public void loadUnits(Collection<String> phrases) {
+        ConcatenativeSpeech loaded = new ConcatenativeSpeech(CROSS_FADE_MILLIS);
+
+        for (String phrase : phrases) {
+            try {
+                loaded.addUnit(phrase, synthesizeUncached(phrase));
+            } catch (SynthesisException | IOException | IllegalArgumentException ex) {
+                Logger.getLogger(getClass().getName()).log(Level.WARNING, "Error loading unit, units not used", ex);
+                return;
+            }
+        }
+        units = loaded;
+    }
+
+    /** Get audio for text from the cache, concatenating or synthesizing and caching it on a miss */
+    private CachedAudio getAudio(String text) throws SynthesisException, IOException {
+        AudioCache cache = audioCache;
+        String voice = marytts.getVoice(), effects = marytts.getAudioEffects();
+        CachedAudio audio = cache == null ? null : cache.get(text, voice, effects);
+
+        if (audio == null) {
+            ConcatenativeSpeech loadedUnits = units;
+            if (loadedUnits != null) audio = loadedUnits.say(text);
+            if (audio == null) audio = synthesizeUncached(text);
+            if (cache != null) cache.put(text, voice, effects, audio);
+        }
+        return audio;
+    }
+
+    /** Run MaryTTS, which can only synthesize one phrase at a time */
+    private synchronized CachedAudio synthesizeUncached(String text) throws SynthesisException, IOException {
+        try (AudioInputStream audio = marytts.generateAudio(text)) {
+            return CachedAudio.read(audio);
         }
     }
 
     /** Stop TTS */
     public void stopSpeaking() {
-        // Stop the previous player
-        if (tts != null)
-            tts.cancel();
+        // Stop the previous utterance
+        AudioOutput.Utterance utterance = playing;
+        if (utterance != null)
+            utterance.cancel();
+
+        // And any synthesis still running, for it or for responses prepared to play after it
+        for (PipelinedAudio audio : streamingAudio) audio.cancel();
+    }
+
+    /** Get time from the last speak call to its first audio being ready, in nanoseconds */
+    public long getTimeToFirstAudio() {
+        return timeToFirstAudio;
+    }
+
+    /** Get if responses are synthesized and played phrase by phrase */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /** Set if responses are synthesized and played phrase by phrase */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
     }
 
     /** Get available voices for TTS */
@@ -115,9 +261,35 @@ public class TextToSpeech {
         return StreamSupport.stream(AudioEffects.getEffects().spliterator(), false).collect(Collectors.toList());
     }
 
+    /** Get the audio output, opened on first use */
+    public AudioOutput getAudioOutput() {
+        synchronized (outputLock) {  // Not this, which is held while synthesizing
+            if (output == null) output = new AudioOutput();
+            return output;
+        }
+    }
+
+    /** Set the audio output, i.e. to share one between several voices */
+    public void setAudioOutput(AudioOutput output) {
+        synchronized (outputLock) {
+            this.output = output;
+        }
+    }
+
+    /** Get audio cache, null if synthesized audio isn't cached */
+    public AudioCache getAudioCache() {
+        return audioCache;
+    }
+
+    /** Set audio cache, null to synthesize every phrase */
+    public void setAudioCache(AudioCache audioCache) {
+        this.audioCache = audioCache;
+    }
+
     /** Change TTS voice */
     public void setVoice(String voice) {
         marytts.setVoice(voice);
+        units = null;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package calculatorassets;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Many sessions evaluating at once around one shared ExpressionEvaluator must give the results a single thread gives.
+ * The inputs overlap between threads and outnumber the caches, so the compiled expression cache, the result cache and
+ * the LruCache segments under both are hit, filled and evicted concurrently. ConcurrencyBenchmark measures the
+ * throughput of the same.
+ */
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConcurrentEvaluationTest {
+    private static final String[] CORPUS = {
+            "two plus two",
+            "five hundred twenty three times negative four point two five",
+            "the square root of one hundred forty four",
+            "left parentheses three plus four right parentheses divided by seven",
+            "the co see can't of pi over four",
+            "the co sign of two plus the see can't of one",
+            "five fact or eel to the power of two",
+            "the natural log of e plus the log of one thousand",
+            "fifty percent times eight hundred"
+    };
+    private static final String[] OPERATORS = {"plus", "minus", "times", "divided by"};
+    private static final int RANDOM_EXPRESSIONS = 1000;  // Several times the compile cache's 256 entries
+    private static final int THREADS = 8;
+    private static final int EVALUATIONS = 5000;  // Per thread
+
+    @Test(timeout = 120000)
+    public void concurrentResultsMatchSingleThreaded() throws Exception {
+        final List<String> expressions = new ArrayList<>();
+        for (String expression : CORPUS) expressions.add(expression);
+        Random random = new Random(7);
+        for (int i = 0; i < RANDOM_EXPRESSIONS; i++) expressions.add(randomExpression(random));
+
+        ExpressionCompiler.getCache().clear();
+        final BigDecimal[] reference = new BigDecimal[expressions.size()];
+        ExpressionEvaluator uncached = new ExpressionEvaluator(null);
+        for (int i = 0; i < reference.length; i++) reference[i] = evaluate(uncached, expressions.get(i));
+        ExpressionCompiler.getCache().clear();
+
+        final ExpressionEvaluator shared = new ExpressionEvaluator(new ResultCache(128, 10, TimeUnit.MINUTES));
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> mismatches = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final Random threadRandom = new Random(t);
+                mismatches.add(pool.submit((Callable<Integer>) () -> {
+                    int wrong = 0;
+                    for (int i = 0; i < EVALUATIONS; i++) {
+                        int index = threadRandom.nextInt(expressions.size());
+                        if (!Objects.equals(evaluate(shared, expressions.get(index)), reference[index])) wrong++;
+                    }
+                    return wrong;
+                }));
+            }
+
+            int wrong = 0;
+            for (Future<Integer> threadMismatches : mismatches) wrong += threadMismatches.get();
+            assertEquals("Results differing from the single threaded reference", 0, wrong);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Evaluate on a fresh session, like a new connection to the server */
+    private static BigDecimal evaluate(ExpressionEvaluator evaluator, String expression) {
+        SpeechExpression session = new SpeechExpression(evaluator);
+        session.setAcousticRepresentation(expression);
+        return session.getResult();
+    }
+
+    /** Two to four numbers, some of them square roots, joined by arithmetic operators */
+    private static String randomExpression(Random random) {
+        StringBuilder expression = new StringBuilder(randomOperand(random));
+        for (int operands = 1 + random.nextInt(3); operands > 0; operands--) {
+            expression.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ')
+                    .append(randomOperand(random));
+        }
+        return expression.toString();
+    }
+
+    private static String randomOperand(Random random) {
+        String number = NumberWords.toWords(BigDecimal.valueOf(random.nextInt(1000000), random.nextInt(3)));
+        return random.nextInt(4) == 0 ? "the square root of " + number : number;
+    }
+}
@@ -0,0 +1,101 @@
+package tts;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Barge-in behaviour of AudioOutput on a mock line playing in real time: cancelling an utterance silences the output
+ * within BargeInBenchmark's bound, and after stop() nothing queued or played before it sounds again.
+ */
+
+import benchmark.BargeInBenchmark;
+import benchmark.MockLine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+public class AudioOutputTest {
+    private static final long BOUND_NANOS = (long) (BargeInBenchmark.BOUND_MILLIS * 1e6);
+
+    private MockLine line;
+    private AudioOutput output;
+    private CachedAudio clip;
+
+    @Before
+    public void setUp() {
+        line = new MockLine(AudioOutput.DEFAULT_FORMAT);
+        output = new AudioOutput(line, AudioOutput.DEFAULT_FORMAT);
+        clip = MockLine.tone(AudioOutput.DEFAULT_FORMAT, 2);
+    }
+
+    @After
+    public void tearDown() {
+        output.close();
+    }
+
+    @Test(timeout = 30000)
+    public void cancelSilencesWithinBound() throws InterruptedException {
+        for (int run = 0; run < 5; run++) {
+            AudioOutput.Utterance utterance = output.play(clip, 0.5f);
+            awaitAudible();
+            Thread.sleep(100 + 50 * run);  // Mid utterance
+
+            long cancelled = System.nanoTime();
+            utterance.cancel();
+            long silentAfter = line.getAudibleUntil() - cancelled;
+            utterance.await();
+
+            assertTrue("Silent " + silentAfter / 1e6 + " ms after cancel", silentAfter <= BOUND_NANOS);
+            assertTrue(utterance.isCancelled());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void stopDropsQueuedUtterancesAndStaysSilent() throws InterruptedException {
+        List<AudioOutput.Utterance> utterances = new ArrayList<>();
+        for (int i = 0; i < 3; i++) utterances.add(output.play(clip, 0.5f));
+        awaitAudible();
+        Thread.sleep(100);
+
+        long stopped = System.nanoTime();
+        output.stop();
+        long returned = System.nanoTime();
+        for (AudioOutput.Utterance utterance : utterances) {
+            utterance.await();
+            assertTrue("Utterance from before the barge-in wasn't cancelled", utterance.isCancelled());
+        }
+        assertTrue("Not silent within the bound after stop", line.getAudibleUntil() - stopped <= BOUND_NANOS);
+
+        Thread.sleep(300);
+        assertTrue("Audio from before the barge-in played after stop", line.getAudibleUntil() <= returned);
+
+        AudioOutput.Utterance next = output.play(clip, 0.5f);  // Output still works for the next answer
+        awaitAudible();
+        next.cancel();
+        next.await();
+    }
+
+    @Test(timeout = 60000)
+    public void noStaleAudioWhenStopRacesPlayback() throws InterruptedException {
+        CachedAudio shortClip = MockLine.tone(AudioOutput.DEFAULT_FORMAT, 1);
+
+        for (int run = 0; run < 200; run++) {
+            AudioOutput.Utterance utterance = output.play(shortClip, 0.5f);
+            Thread.sleep(run % 10);  // Stop before, while and after it is taken
+            output.stop();
+            long returned = System.nanoTime();
+            utterance.await();
+
+            assertTrue("Stale utterance wasn't cancelled on run " + run, utterance.isCancelled());
+            assertTrue("Stale audio after stop on run " + run, line.getAudibleUntil() <= returned);
+        }
+    }
+
+    private void awaitAudible() throws InterruptedException {
+        while (!line.isAudible()) Thread.sleep(1);
+    }
+}
@@ -0,0 +1,110 @@
+package benchmark;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Compares the recognizer on the expression grammar generated by GrammarCompiler against the hand written one it
+ * replaced (resources/benchmark/equationSyntax.gram). Both grammars are measured without any models, as the word nodes
+ * of their search graph and how many of those the decoder starts out following, and with recorded WAV files, which
+ * are decoded with each grammar in turn on one decoder through FileRecognizer. Every round reports the real time
+ * factor of both grammars, and how many hypotheses they disagree on is printed at the end. Rounds alternate between
+ * the grammars, the first one of each warms up the JIT and isn't counted.
+ *
+ * Built with the tools as it measures grammars with GrammarCompiler.
+ *
+ * Usage: java -cp <classpath> benchmark.GrammarBenchmark [--rounds n] [--baseline grammar] [directory or WAV files]...
+ */
+
+import main.FileRecognizer;
+import tools.GrammarCompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+public class GrammarBenchmark {
+    private static final String[] NAMES = {"hand written", "generated"};
+
+    /** Main method */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int rounds = 3;
+        String baseline = "resources/benchmark/equationSyntax.gram";
+        List<String> paths = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--rounds") && i + 1 < args.length) rounds = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--baseline") && i + 1 < args.length) baseline = args[++i];
+            else paths.add(args[i]);
+        }
+
+        File[] grammars = {new File(baseline), new File(GrammarCompiler.GRAMMAR_FILE)};
+        for (int i = 0; i < grammars.length; i++) {
+            System.out.println(NAMES[i] + ": " + GrammarCompiler.measure(grammars[i], "expression"));
+        }
+        if (paths.isEmpty()) return;
+
+        List<File> files = FileRecognizer.listFiles(paths);
+        File[] directories = new File[grammars.length];
+        for (int i = 0; i < grammars.length; i++) directories[i] = stage(grammars[i]);
+
+        double[][] realTimeFactors = new double[grammars.length][rounds];
+        String[] results = new String[grammars.length];
+        for (int round = 0; round <= rounds; round++) {
+            for (int i = 0; i < grammars.length; i++) {
+                StringWriter output = new StringWriter();
+                FileRecognizer.Statistics statistics = new FileRecognizer(1, directories[i].getPath()).run(files,
+                        output);
+                if (round == 0) {
+                    results[i] = output.toString();
+                    continue;
+                }
+
+                realTimeFactors[i][round - 1] = statistics.getRealTimeFactor();
+                System.out.printf(Locale.ROOT, "round %d, %s: real time factor %.4f%n", round, NAMES[i],
+                        statistics.getRealTimeFactor());
+            }
+        }
+
+        System.out.println();
+        double[] averages = new double[grammars.length];
+        for (int i = 0; i < grammars.length; i++) {
+            averages[i] = Arrays.stream(realTimeFactors[i]).average().orElse(0);
+            System.out.printf(Locale.ROOT, "%s: real time factor %.4f avg, %.4f min%n", NAMES[i], averages[i],
+                    Arrays.stream(realTimeFactors[i]).min().orElse(0));
+        }
+        if (averages[0] > 0)
+            System.out.printf(Locale.ROOT, "generated grammar decodes in %.1f%% of the time%n",
+                    100 * averages[1] / averages[0]);
+        System.out.println(disagreements(results[0], results[1]));
+    }
+
+    /** Directory holding the commands grammar next to a version of the expression grammar, removed on exit */
+    private static File stage(File expressionGrammar) throws IOException {
+        Path directory = Files.createTempDirectory("grammar");
+        Path commands = directory.resolve("commands.gram"), expressions = directory.resolve("equationSyntax.gram");
+        Files.copy(new File(GrammarCompiler.GRAMMAR_FILE).toPath().resolveSibling("commands.gram"), commands);
+        Files.copy(expressionGrammar.toPath(), expressions);
+
+        // Deleted in reverse order
+        directory.toFile().deleteOnExit();
+        commands.toFile().deleteOnExit();
+        expressions.toFile().deleteOnExit();
+        return directory.toFile();
+    }
+
+    /** How many hypothesis lines of two result listings differ */
+    private static String disagreements(String first, String second) {
+        String[] firstLines = first.split("\n"), secondLines = second.split("\n");
+        int differ = Math.abs(firstLines.length - secondLines.length);
+        for (int i = 0; i < Math.min(firstLines.length, secondLines.length); i++) {
+            if (!firstLines[i].equals(secondLines[i])) differ++;
+        }
+        return String.format(Locale.ROOT, "%d of %d hypotheses differ between the grammars", differ,
+                Math.max(firstLines.length, secondLines.length));
+    }
+}
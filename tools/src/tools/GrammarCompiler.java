@@ -0,0 +1,570 @@
+package tools;
+
+/* Copyright 2019 dinitrogen-tetroxide
+ *
+ * Build time compiler of the spoken expression vocabulary. resources/grammarFiles/vocabulary.txt is the only place
+ * number words and operator phrases are spelled out, from it this generates equationSyntax.gram for the recognizer
+ * and LexerTables.java for SpeechLexer and NumberWords, so what can be said and what can be read can't drift apart.
+ *
+ * The grammar is factored for the decoder, which follows every word that may come next in parallel. Alternatives
+ * starting (or ending) with the same words are merged with their weights summed, numbers are nested so no two
+ * branches start with the same word (scales and decimal digits nested instead of rows of optional groups, which are
+ * all live at once), and operators that follow an operand share one <group>. Sphinx4 copies a rule for every place
+ * it is referred to unless the reference is recursive, so <group> refers back to itself for parentheses instead of
+ * repeating its operands. Numbers are exactly what SpeechLexer reads, the grammar only differs from the hand written
+ * one in accepting redundant parentheses and "hundred" followed by a teen, both of which the lexer already took.
+ *
+ * Lives in the tools source set with the other build time code, the calculator only ships what it generates.
+ *
+ * Usage: java tools.GrammarCompiler [--check] [vocabulary file]
+ *        --check only reports whether the generated files are up to date
+ */
+
+import calculatorassets.Token;
+
+import edu.cmu.sphinx.jsgf.JSGFGrammarParseException;
+import edu.cmu.sphinx.jsgf.JSGFRuleGrammar;
+import edu.cmu.sphinx.jsgf.JSGFRuleGrammarFactory;
+import edu.cmu.sphinx.jsgf.JSGFRuleGrammarManager;
+import edu.cmu.sphinx.jsgf.parser.JSGFParser;
+import edu.cmu.sphinx.jsgf.rule.JSGFRule;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleAlternatives;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleCount;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleName;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleSequence;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleTag;
+import edu.cmu.sphinx.jsgf.rule.JSGFRuleToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public final class GrammarCompiler {
+    public static final String VOCABULARY_FILE = "resources/grammarFiles/vocabulary.txt";
+    public static final String GRAMMAR_FILE = "resources/grammarFiles/equationSyntax.gram";
+    public static final String TABLES_FILE = "src/calculatorassets/LexerTables.java";
+
+    // SpeechLexer's number classes, the generated tables refer to them by name so only the order has to match
+    private static final int ZERO = 1;
+    private static final int UNIT = 2;
+    private static final int TEEN = 3;
+    private static final int TENS = 4;
+    private static final int HUNDRED = 5;
+    private static final int SCALE = 6;
+    private static final int POINT = 7;
+    private static final int NEGATIVE = 8;
+    private static final List<String> NUMBER_CLASSES = Collections.unmodifiableList(Arrays.asList(
+            "zero", "unit", "teen", "tens", "hundred", "scale", "point", "negative"));
+    private static final List<String> PHRASE_RULES = Collections.unmodifiableList(Arrays.asList(
+            "term", "leftRightOperator", "rightOperator", "leftOperator", "leftParenthesis", "rightParenthesis"));
+    private static final List<String> OPERATOR_RULES = Collections.unmodifiableList(Arrays.asList(
+            "leftRightOperator", "rightOperator", "leftOperator"));
+    private static final String NUMBER_RULE = "<number>";
+    private static final int MAX_LINE = 120;
+
+    private final List<NumberWord> numbers = new ArrayList<>();
+    private final Map<String, List<Phrase>> phrases = new LinkedHashMap<>();
+    private final Map<String, Double> expressionWeights = new LinkedHashMap<>();
+    private int decimals = -1;
+
+    /** Read and check a vocabulary definition, throws RuntimeException pointing at the line that is wrong */
+    public GrammarCompiler(File vocabularyFile) throws IOException {
+        for (String rule : PHRASE_RULES) phrases.put(rule, new ArrayList<>());
+        List<String> lines = Files.readAllLines(vocabularyFile.toPath(), StandardCharsets.UTF_8);
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            try {
+                parseLine(line);
+            } catch (RuntimeException ex) {
+                throw new RuntimeException(vocabularyFile + ":" + (i + 1) + ": " + ex.getMessage(), ex);
+            }
+        }
+        check();
+    }
+
+    /* ------------------------------------------------ Vocabulary -------------------------------------------------- */
+
+    private void parseLine(String line) {
+        String[] fields = line.split("\\s+");
+        switch (fields[0]) {
+            case "number":
+                if (fields.length < 3 || !NUMBER_CLASSES.contains(fields[1]))
+                    throw new RuntimeException("Expected number <class> <word>=<value>..., classes are " +
+                            NUMBER_CLASSES);
+                for (int i = 2; i < fields.length; i++) {
+                    String[] wordValue = fields[i].split("=");
+                    if (wordValue.length != 2) throw new RuntimeException("Expected <word>=<value>: " + fields[i]);
+                    numbers.add(new NumberWord(wordValue[0], NUMBER_CLASSES.indexOf(fields[1]) + 1,
+                            Long.parseLong(wordValue[1])));
+                }
+                break;
+            case "decimals":
+                if (fields.length != 2) throw new RuntimeException("Expected decimals <count>");
+                decimals = Integer.parseInt(fields[1]);
+                break;
+            case "expression":
+                if (fields.length != 3 || parseWeight(fields[1]) == null || !OPERATOR_RULES.contains(fields[2]))
+                    throw new RuntimeException("Expected expression /weight/ <operator rule>");
+                expressionWeights.put(fields[2], parseWeight(fields[1]));
+                break;
+            default:
+                parsePhrase(line);
+        }
+    }
+
+    /** <rule> [/weight/] <tokens> = <phrase> | <phrase>... */
+    private void parsePhrase(String line) {
+        int equals = line.indexOf('=');
+        if (equals == -1) throw new RuntimeException("Expected <rule> [/weight/] <tokens> = <phrase> | <phrase>...");
+        String[] head = line.substring(0, equals).trim().split("\\s+");
+        List<Phrase> rule = phrases.get(head[0]);
+        if (rule == null) throw new RuntimeException("Unknown rule " + head[0] + ", rules are " + PHRASE_RULES);
+
+        Double weight = head.length > 1 ? parseWeight(head[1]) : null;
+        List<String> tokens = new ArrayList<>();
+        for (int i = weight == null ? 1 : 2; i < head.length; i++) {
+            Token.Type type = Token.Type.valueOf(head[i]);
+            if (type == Token.Type.NUMBER) {
+                if (i + 1 == head.length) throw new RuntimeException("NUMBER needs a value");
+                tokens.add("new Token(Token.Type.NUMBER, new BigDecimal(\"" + new BigDecimal(head[++i]) + "\"))");
+            } else tokens.add("new Token(Token.Type." + type.name() + ")");
+        }
+
+        List<String> variants = new ArrayList<>();
+        for (String variant : line.substring(equals + 1).split("\\|")) {
+            variant = variant.trim().replaceAll("\\s+", " ");
+            if (variant.isEmpty()) throw new RuntimeException("Empty phrase");
+            variants.add(variant);
+        }
+        boolean isNumber = variants.equals(Collections.singletonList(NUMBER_RULE));
+        if (isNumber != tokens.isEmpty() || (isNumber && !head[0].equals("term")))
+            throw new RuntimeException("Phrases need tokens, only a term of " + NUMBER_RULE + " has none");
+        rule.add(new Phrase(weight, tokens, variants));
+    }
+
+    private static Double parseWeight(String field) {
+        if (!field.startsWith("/")) return null;
+        if (!field.endsWith("/") || field.length() < 3) throw new RuntimeException("Expected /weight/: " + field);
+        return Double.parseDouble(field.substring(1, field.length() - 1));
+    }
+
+    /** Check everything the generated grammar and NumberWords depend on is there */
+    private void check() {
+        long[][] required = {{ZERO, 0}, {UNIT, 1, 2, 3, 4, 5, 6, 7, 8, 9},
+                {TEEN, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19},
+                {TENS, 20, 30, 40, 50, 60, 70, 80, 90}, {HUNDRED, 100},
+                {POINT, 0}, {NEGATIVE, 0}};
+        for (long[] numberClass : required) {
+            for (int i = 1; i < numberClass.length; i++) {
+                if (findNumber((int) numberClass[0], numberClass[i]) == null)
+                    throw new RuntimeException("No " + NUMBER_CLASSES.get((int) numberClass[0] - 1) + " word for " +
+                            numberClass[i]);
+            }
+        }
+        List<Long> scales = new ArrayList<>();
+        for (NumberWord number : numbers) if (number.numberClass == SCALE) scales.add(number.value);
+        Collections.sort(scales);
+        long power = 1;
+        for (long scale : scales) {
+            power *= 1000;
+            if (scale != power) throw new RuntimeException("Scales have to be 1000, 1000000 and so on");
+        }
+
+        if (decimals < 1) throw new RuntimeException("decimals <count> is missing");
+        for (String rule : PHRASE_RULES) {
+            List<Phrase> rulePhrases = phrases.get(rule);
+            if (rulePhrases.isEmpty()) throw new RuntimeException("Rule " + rule + " has no phrases");
+            for (Phrase phrase : rulePhrases) {
+                if ((phrase.weight == null) != (rulePhrases.get(0).weight == null))
+                    throw new RuntimeException("Either all phrases of " + rule + " are weighted or none are");
+            }
+        }
+        for (String rule : OPERATOR_RULES) {
+            if (!expressionWeights.containsKey(rule)) throw new RuntimeException("expression /weight/ " + rule +
+                    " is missing");
+        }
+        if (!phrases.get("term").stream().anyMatch(phrase -> phrase.variants.contains(NUMBER_RULE)))
+            throw new RuntimeException("No term of " + NUMBER_RULE);
+    }
+
+    private NumberWord findNumber(int numberClass, long value) {
+        for (NumberWord number : numbers) if (number.numberClass == numberClass && number.value == value) return number;
+        return null;
+    }
+
+    /** Number word of a vocabulary */
+    private static final class NumberWord {
+        private final String word;
+        private final int numberClass;
+        private final long value;
+
+        private NumberWord(String word, int numberClass, long value) {
+            this.word = word;
+            this.numberClass = numberClass;
+            this.value = value;
+        }
+    }
+
+    /** Line of phrases of a vocabulary, weight is null if the rule isn't weighted */
+    private static final class Phrase {
+        private final Double weight;
+        private final List<String> tokens;  // Java expressions
+        private final List<String> variants;
+
+        private Phrase(Double weight, List<String> tokens, List<String> variants) {
+            this.weight = weight;
+            this.tokens = tokens;
+            this.variants = variants;
+        }
+    }
+
+    /* ------------------------------------------------- Grammar ---------------------------------------------------- */
+
+    /** Generate equationSyntax.gram */
+    public String grammar() {
+        StringBuilder grammar = new StringBuilder(4096);
+        grammar.append("#JSGF 1.0\ngrammar equationSyntax;\n\n// Copyright 2019 dinitrogen-tetroxide\n")
+                .append("// Generated by tools.GrammarCompiler from vocabulary.txt, do not edit\n\n");
+
+        grammar.append("// Numbers, read the same way as by SpeechLexer\n");
+        for (String numberClass : new String[]{"zero", "unit", "teen", "tens"}) {
+            rule(grammar, numberClass, numberWords(NUMBER_CLASSES.indexOf(numberClass) + 1));
+        }
+        rule(grammar, "digit", "( <zero> | <unit> )");
+        String hundred = numberWords(HUNDRED);
+        rule(grammar, "base", "( <unit> [ " + hundred + " [ <teen> | <tens> [ <unit> ] | <unit> ] ] | <teen> | " +
+                "<tens> [ <unit> ] )");
+
+        // Largest scale first, after each scale only smaller ones may follow
+        List<NumberWord> scales = new ArrayList<>();
+        for (NumberWord number : numbers) if (number.numberClass == SCALE) scales.add(number);
+        scales.sort((a, b) -> Long.compare(b.value, a.value));
+        rule(grammar, "integer", integer(scales, 0));
+        for (int i = 0; i < scales.size() - 1; i++) rule(grammar, afterScale(scales.get(i)), integer(scales, i + 1));
+
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < decimals; i++) digits.append(" [ <digit>");
+        for (int i = 0; i < decimals; i++) digits.append(" ]");
+        rule(grammar, "decimals", numberWords(POINT) + digits);
+        rule(grammar, "number", "[ " + numberWords(NEGATIVE) + " ] ( ( <integer> | <zero> ) [ <decimals> ] | " +
+                "<decimals> )");
+
+        grammar.append("\n// Operands and operators\n");
+        for (String rule : new String[]{"term", "leftRightOperator", "rightOperator", "leftOperator"}) {
+            rule(grammar, rule, factor(alternatives(rule), phrases.get(rule).get(0).weight != null));
+        }
+
+        grammar.append("\n// Operators apply to a group, a term or expression in as many parentheses as wanted\n");
+        List<Alternative> group = new ArrayList<>();
+        group.add(new Alternative(1, Arrays.asList(factor(alternatives("leftParenthesis"), false), "<group>",
+                factor(alternatives("rightParenthesis"), false))));
+        group.add(new Alternative(1, Collections.singletonList("<term>")));
+        group.add(new Alternative(1, Collections.singletonList("<expression>")));
+        rule(grammar, "group", factor(group, false));
+
+        List<Alternative> expression = new ArrayList<>();
+        expression.add(new Alternative(expressionWeights.get("leftRightOperator"),
+                Arrays.asList("<group>", "<leftRightOperator>", "<group>")));
+        expression.add(new Alternative(expressionWeights.get("leftOperator"),
+                Arrays.asList("<group>", "<leftOperator>")));
+        expression.add(new Alternative(expressionWeights.get("rightOperator"),
+                Arrays.asList("<rightOperator>", "<group>")));
+        grammar.append("public ");
+        rule(grammar, "expression", factor(expression, true));
+        return grammar.toString();
+    }
+
+    private static void rule(StringBuilder grammar, String name, String body) {
+        grammar.append('<').append(name).append("> = ").append(body).append(";\n");
+    }
+
+    /** Words of a number class, as a choice if there is more than one */
+    private String numberWords(int numberClass) {
+        List<String> words = new ArrayList<>();
+        for (NumberWord number : numbers) if (number.numberClass == numberClass) words.add(number.word);
+        return words.size() == 1 ? words.get(0) : "( " + String.join(" | ", words) + " )";
+    }
+
+    /** Integer using the scales from index on, each scale followed by an integer of the smaller ones */
+    private static String integer(List<NumberWord> scales, int index) {
+        if (index == scales.size()) return "<base>";
+
+        List<String> choices = new ArrayList<>();
+        for (int i = index; i < scales.size(); i++) {
+            choices.add(scales.get(i).word + " [ " + (i == scales.size() - 1 ? "<base>" :
+                    "<" + afterScale(scales.get(i)) + ">") + " ]");
+        }
+        return "<base> [ " + String.join(" | ", choices) + " ]";
+    }
+
+    private static String afterScale(NumberWord scale) {
+        return "after" + Character.toUpperCase(scale.word.charAt(0)) + scale.word.substring(1);
+    }
+
+    /** Every phrase of a rule as an alternative, phrases of one line splitting its weight */
+    private List<Alternative> alternatives(String rule) {
+        List<Alternative> alternatives = new ArrayList<>();
+        for (Phrase phrase : phrases.get(rule)) {
+            double weight = phrase.weight == null ? 1 : phrase.weight / phrase.variants.size();
+            for (String variant : phrase.variants) {
+                List<String> elements = new ArrayList<>();
+                for (String word : variant.split(" ")) {
+                    elements.add(word.startsWith("[") ? "[ " + word.substring(1, word.length() - 1) + " ]" : word);
+                }
+                alternatives.add(new Alternative(weight, elements));
+            }
+        }
+        return alternatives;
+    }
+
+    /** JSGF for a choice between alternatives, with the elements all of them start or end with pulled out */
+    private static String factor(List<Alternative> alternatives, boolean weighted) {
+        if (alternatives.size() == 1) return String.join(" ", alternatives.get(0).elements);
+
+        int shortest = Integer.MAX_VALUE;
+        for (Alternative alternative : alternatives) shortest = Math.min(shortest, alternative.elements.size());
+        int prefix = 0, suffix = 0;
+        while (prefix < shortest && allEqual(alternatives, prefix, false)) prefix++;
+        while (suffix < shortest - prefix && allEqual(alternatives, suffix, true)) suffix++;
+
+        List<Alternative> rests = new ArrayList<>();
+        boolean optional = false;
+        for (Alternative alternative : alternatives) {
+            List<String> rest = alternative.elements.subList(prefix, alternative.elements.size() - suffix);
+            if (rest.isEmpty()) optional = true;
+            else rests.add(new Alternative(alternative.weight, rest));
+        }
+
+        List<String> factored = new ArrayList<>(alternatives.get(0).elements.subList(0, prefix));
+        if (!rests.isEmpty()) {
+            String choice = choice(rests, weighted);
+            factored.add(optional ? "[ " + choice + " ]" : choice);
+        }
+        List<String> first = alternatives.get(0).elements;
+        factored.addAll(first.subList(first.size() - suffix, first.size()));
+        return String.join(" ", factored);
+    }
+
+    /** Alternatives without a common start, the ones sharing their first element merged */
+    private static String choice(List<Alternative> alternatives, boolean weighted) {
+        if (alternatives.size() == 1) return String.join(" ", alternatives.get(0).elements);
+
+        Map<String, List<Alternative>> byFirst = new LinkedHashMap<>();
+        for (Alternative alternative : alternatives) {
+            byFirst.computeIfAbsent(alternative.elements.get(0), first -> new ArrayList<>()).add(alternative);
+        }
+
+        List<String> choices = new ArrayList<>();
+        for (List<Alternative> group : byFirst.values()) {
+            double weight = 0;
+            for (Alternative alternative : group) weight += alternative.weight;
+            choices.add((weighted ? "/" + formatWeight(weight) + "/ " : "") + factor(group, weighted));
+        }
+        return choices.size() == 1 ? choices.get(0) : "( " + String.join(" | ", choices) + " )";
+    }
+
+    private static boolean allEqual(List<Alternative> alternatives, int offset, boolean fromEnd) {
+        String element = null;
+        for (Alternative alternative : alternatives) {
+            List<String> elements = alternative.elements;
+            String current = elements.get(fromEnd ? elements.size() - 1 - offset : offset);
+            if (element == null) element = current;
+            else if (!element.equals(current)) return false;
+        }
+        return true;
+    }
+
+    private static String formatWeight(double weight) {
+        if (weight == Math.rint(weight)) return Long.toString((long) weight);
+        return new BigDecimal(weight).setScale(4, BigDecimal.ROUND_HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
+    /** Sequence of JSGF elements with its weight, while factoring */
+    private static final class Alternative {
+        private final double weight;
+        private final List<String> elements;
+
+        private Alternative(double weight, List<String> elements) {
+            this.weight = weight;
+            this.elements = elements;
+        }
+    }
+
+    /* -------------------------------------------------- Tables ---------------------------------------------------- */
+
+    /** Generate LexerTables.java */
+    public String tables() {
+        List<String> words = new ArrayList<>(), classes = new ArrayList<>(), values = new ArrayList<>();
+        for (NumberWord number : numbers) {
+            words.add('"' + number.word + '"');
+            classes.add("SpeechLexer." + NUMBER_CLASSES.get(number.numberClass - 1).toUpperCase(Locale.ROOT));
+            values.add(number.value + (number.value > Integer.MAX_VALUE ? "L" : ""));
+        }
+
+        List<String> patterns = new ArrayList<>(), tokens = new ArrayList<>();
+        for (List<Phrase> rule : phrases.values()) {
+            for (Phrase phrase : rule) {
+                if (phrase.tokens.isEmpty()) continue;  // The number term, lexed from the number words
+                for (String variant : phrase.variants) {
+                    patterns.add('"' + variant + '"');
+                    tokens.add("{" + String.join(", ", phrase.tokens) + "}");
+                }
+            }
+        }
+
+        StringBuilder tables = new StringBuilder(8192);
+        tables.append("package calculatorassets;\n\n")
+                .append("/* Copyright 2019 dinitrogen-tetroxide\n *\n")
+                .append(" * Generated by GrammarCompiler from ").append(VOCABULARY_FILE).append(", do not edit.\n *\n")
+                .append(" * Vocabulary of SpeechLexer and NumberWords, equationSyntax.gram is generated from the same ")
+                .append("definition.\n */\n\n")
+                .append("import java.math.BigDecimal;\n\n")
+                .append("final class LexerTables {\n")
+                .append("    static final int MAX_DECIMAL_DIGITS = ").append(decimals).append(";\n\n")
+                .append("    /** Number words, their SpeechLexer number class and value */\n");
+        array(tables, "String[] NUMBER_WORDS", words, true);
+        array(tables, "int[] NUMBER_CLASSES", classes, true);
+        array(tables, "long[] NUMBER_VALUES", values, true);
+        tables.append("\n    /** Phrases, bracketed words are optional, and the tokens each one lexes to */\n");
+        array(tables, "String[] PHRASES", patterns, false);
+        array(tables, "Token[][] PHRASE_TOKENS", tokens, false);
+        tables.append("\n    private LexerTables() {\n    }\n}\n");
+        return tables.toString();
+    }
+
+    /** Append an array initializer, wrapped at the line length or with one item per line */
+    private static void array(StringBuilder tables, String declaration, List<String> items, boolean wrap) {
+        tables.append("    static final ").append(declaration).append(" = {\n");
+        StringBuilder line = new StringBuilder("           ");
+        for (int i = 0; i < items.size(); i++) {
+            String item = " " + items.get(i) + (i < items.size() - 1 ? "," : "");
+            if (line.length() > 11 && (!wrap || line.length() + item.length() > MAX_LINE)) {
+                tables.append(line).append('\n');
+                line.setLength(11);
+            }
+            line.append(item);
+        }
+        tables.append(line).append("\n    };\n");
+    }
+
+    /* ----------------------------------------------- Search graph ------------------------------------------------- */
+
+    /** Size of the search graph Sphinx4 builds for a rule of a JSGF file, without loading any models */
+    public static GraphSize measure(File grammarFile, String rule) {
+        try {
+            JSGFRuleGrammar grammar = JSGFParser.newGrammarFromJSGF(grammarFile.toURI().toURL(),
+                    new JSGFRuleGrammarFactory(new JSGFRuleGrammarManager()));
+            Deque<String> stack = new ArrayDeque<>(Collections.singleton(rule));
+            int[] counts = GraphSize.count(grammar, grammar.getRule(rule), stack);
+            return new GraphSize(counts[0], counts[1]);
+        } catch (IOException | JSGFGrammarParseException ex) {
+            throw new RuntimeException("Error loading grammar " + grammarFile, ex);
+        }
+    }
+
+    /** Words in a search graph, and how many of them may be the first word */
+    public static final class GraphSize {
+        private final int words;
+        private final int firstWords;
+
+        private GraphSize(int words, int firstWords) {
+            this.words = words;
+            this.firstWords = firstWords;
+        }
+
+        /** Get word nodes, one per word of every copy of a rule */
+        public int getWords() {
+            return words;
+        }
+
+        /** Get word nodes the decoder starts out following */
+        public int getFirstWords() {
+            return firstWords;
+        }
+
+        /** Words, first words and if it can be skipped (0 or 1) of a rule, copied per reference like Sphinx4 does */
+        private static int[] count(JSGFRuleGrammar grammar, JSGFRule rule, Deque<String> stack) {
+            if (rule instanceof JSGFRuleToken) {
+                return new int[]{((JSGFRuleToken) rule).getText().trim().split("\\s+").length, 1, 0};
+            } else if (rule instanceof JSGFRuleName) {
+                String name = ((JSGFRuleName) rule).getSimpleRuleName();
+                if (stack.contains(name)) return new int[]{0, 0, 0};  // Recursion links back to the same nodes
+                stack.push(name);
+                int[] counts = count(grammar, grammar.getRule(name), stack);
+                stack.pop();
+                return counts;
+            } else if (rule instanceof JSGFRuleSequence) {
+                int[] counts = {0, 0, 1};
+                for (JSGFRule item : ((JSGFRuleSequence) rule).getRules()) {
+                    int[] itemCounts = count(grammar, item, stack);
+                    counts[0] += itemCounts[0];
+                    if (counts[2] != 0) counts[1] += itemCounts[1];
+                    counts[2] &= itemCounts[2];
+                }
+                return counts;
+            } else if (rule instanceof JSGFRuleAlternatives) {
+                int[] counts = {0, 0, 0};
+                for (JSGFRule alternative : ((JSGFRuleAlternatives) rule).getRules()) {
+                    int[] alternativeCounts = count(grammar, alternative, stack);
+                    counts[0] += alternativeCounts[0];
+                    counts[1] += alternativeCounts[1];
+                    counts[2] |= alternativeCounts[2];
+                }
+                return counts;
+            } else if (rule instanceof JSGFRuleCount) {
+                int[] counts = count(grammar, ((JSGFRuleCount) rule).getRule(), stack);
+                if (((JSGFRuleCount) rule).getCount() != JSGFRuleCount.ONCE_OR_MORE) counts[2] = 1;
+                return counts;
+            } else if (rule instanceof JSGFRuleTag) {
+                return count(grammar, ((JSGFRuleTag) rule).getRule(), stack);
+            }
+            throw new RuntimeException("Unsupported rule " + rule);
+        }
+
+        @Override
+        public String toString() {
+            return words + " word nodes, " + firstWords + " of them first words";
+        }
+    }
+
+    /* -------------------------------------------------------------------------------------------------------------- */
+
+    /** Write a generated file unless it is up to date, returns if it was */
+    private static boolean update(File file, String content, boolean check) throws IOException {
+        boolean upToDate = file.exists() && new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)
+                .equals(content);
+        if (!upToDate && !check) Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        System.err.println(file + (upToDate ? " is up to date" : check ? " is out of date" : " written"));
+        return upToDate;
+    }
+
+    /** Main method */
+    public static void main(String[] args) throws IOException {
+        boolean check = false;
+        String vocabularyFile = VOCABULARY_FILE;
+        for (String arg : args) {
+            if (arg.equals("--check")) check = true;
+            else vocabularyFile = arg;
+        }
+
+        GrammarCompiler compiler = new GrammarCompiler(new File(vocabularyFile));
+        boolean upToDate = update(new File(GRAMMAR_FILE), compiler.grammar(), check);
+        upToDate &= update(new File(TABLES_FILE), compiler.tables(), check);
+        if (new File(GRAMMAR_FILE).exists())
+            System.err.println("Search graph of <expression>: " + measure(new File(GRAMMAR_FILE), "expression"));
+        if (check && !upToDate) System.exit(1);
+    }
+}